@@ -0,0 +1,178 @@
+import java.util.Arrays;
+
+/**
+ * A set of dates from 1 to a fixed horizon, stored as a bitset of long
+ * words (date d is bit (d-1) % 64 of word (d-1) / 64).
+ *
+ * A year of dates takes six longs, and bulk operations such as
+ * intersects or addAll work on 64 dates at a time.
+ */
+public class AvailabilityCalendar {
+
+	/** horizon used when none is given: the dates 1 to 30 */
+	public static final int DEFAULT_HORIZON = 30;
+
+	/** largest supported horizon, about 2800 years of days */
+	public static final int MAX_HORIZON = 1 << 20;
+
+	/** the last valid date */
+	private final int horizon;
+
+	/** the dates in the set, 64 per word */
+	private final long[] words;
+
+	/**
+	 * Creates an empty calendar.
+	 *
+	 * @param horizon the last valid date, from 1 to MAX_HORIZON
+	 * @throws IllegalArgumentException if horizon is out of that range
+	 */
+	public AvailabilityCalendar(int horizon){
+		if(horizon < 1 || horizon > MAX_HORIZON) throw new IllegalArgumentException();
+		this.horizon = horizon;
+		this.words = new long[((horizon - 1) >>> 6) + 1];
+	}
+
+	/**
+	 * Creates a copy of another calendar.
+	 *
+	 * @param other the calendar to copy
+	 */
+	public AvailabilityCalendar(AvailabilityCalendar other){
+		this.horizon = other.horizon;
+		this.words = Arrays.copyOf(other.words, other.words.length);
+	}
+
+	/**
+	 * @return the last valid date
+	 */
+	public int getHorizon(){
+		return horizon;
+	}
+
+	/**
+	 * @param date a date from 1 to the horizon
+	 * @return true if the date is in the set
+	 * @throws IllegalArgumentException if the date is out of range
+	 */
+	public boolean contains(int date){
+		checkDate(date);
+		return (words[(date - 1) >>> 6] & (1L << (date - 1))) != 0;
+	}
+
+	/**
+	 * Adds a date to the set.
+	 *
+	 * @param date a date from 1 to the horizon
+	 * @return true if the date was not in the set before
+	 * @throws IllegalArgumentException if the date is out of range
+	 */
+	public boolean add(int date){
+		checkDate(date);
+		int w = (date - 1) >>> 6;
+		long bit = 1L << (date - 1);
+		if((words[w] & bit) != 0) return false;
+		words[w] |= bit;
+		return true;
+	}
+
+	/**
+	 * Removes a date from the set.
+	 *
+	 * @param date a date from 1 to the horizon
+	 * @return true if the date was in the set before
+	 * @throws IllegalArgumentException if the date is out of range
+	 */
+	public boolean remove(int date){
+		checkDate(date);
+		int w = (date - 1) >>> 6;
+		long bit = 1L << (date - 1);
+		if((words[w] & bit) == 0) return false;
+		words[w] &= ~bit;
+		return true;
+	}
+
+	/**
+	 * Adds every date of another calendar to this one.
+	 *
+	 * @param other a calendar with the same or a shorter horizon
+	 * @throws IllegalArgumentException if other has a longer horizon
+	 */
+	public void addAll(AvailabilityCalendar other){
+		if(other.horizon > horizon) throw new IllegalArgumentException();
+		for(int w=0;w<other.words.length;w++){
+			words[w] |= other.words[w];
+		}
+	}
+
+	/**
+	 * @param other any calendar
+	 * @return true if the two calendars have a date in common
+	 */
+	public boolean intersects(AvailabilityCalendar other){
+		int common = Math.min(words.length, other.words.length);
+		for(int w=0;w<common;w++){
+			if((words[w] & other.words[w]) != 0) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of dates in the set
+	 */
+	public int size(){
+		int count = 0;
+		for(long word : words){
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * @return true if the set has no dates
+	 */
+	public boolean isEmpty(){
+		for(long word : words){
+			if(word != 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the first date in the set that is not before the given one.
+	 * Iterate with {@code for(int d = c.nextDate(1); d != -1; d = c.nextDate(d + 1))}.
+	 *
+	 * @param from the date to start at (may be past the horizon)
+	 * @return the first date in the set at or after from, or -1 if there is none
+	 */
+	public int nextDate(int from){
+		if(from < 1) from = 1;
+		if(from > horizon) return -1;
+		int w = (from - 1) >>> 6;
+		long word = words[w] & (-1L << (from - 1));
+		for(;;){
+			if(word != 0) return (w << 6) + Long.numberOfTrailingZeros(word) + 1;
+			if(++w == words.length) return -1;
+			word = words[w];
+		}
+	}
+
+	/**
+	 * @return the number of long words holding the dates
+	 */
+	int wordCount(){
+		return words.length;
+	}
+
+	/**
+	 * @param w a word index
+	 * @return the dates 64 * w + 1 to 64 * w + 64 as bits
+	 */
+	long word(int w){
+		return words[w];
+	}
+
+	private void checkDate(int date){
+		if(date < 1 || date > horizon) throw new IllegalArgumentException();
+	}
+}
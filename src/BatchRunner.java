@@ -0,0 +1,298 @@
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs VolunteerMatch commands from a script instead of the menu, for use
+ * in pipelines: {@code java VolunteerMatch -batch script.txt}, or
+ * {@code java VolunteerMatch -batch} to read the commands from standard input.
+ * Options of VolunteerMatch go before -batch, e.g.
+ * {@code java VolunteerMatch -horizon 365 -batch script.txt} starts with a
+ * manager whose dates run from 1 to 365.
+ *
+ * One command per line, its fields separated by ';' like a VE file.
+ * Blank lines and lines starting with '#' are skipped.
+ * <pre>
+ * load;{file}                      read a VE file (menu 1)
+ * load-parallel;{file}             read a VE file using all cores
+ * load-snapshot;{file}             replace everything with a binary snapshot
+ * save;{file}                      write a VE file (menu 2)
+ * save-snapshot;{file}             write a binary snapshot
+ * display-events                   menu 3
+ * display-volunteers               menu 4
+ * match;{event};{volunteer}        menu 5
+ * remove-match;{event};{volunteer} menu 6
+ * add-volunteer;{name};{date},...  menu 7
+ * remove-volunteer;{name}          menu 8
+ * add-event;{name};{date};{limit}
+ * remove-event;{name}
+ * auto-match
+ * quit                             stop before the end of the script
+ * </pre>
+ * If the manager has a write-ahead log, load-snapshot moves it to the
+ * loaded manager, whose state becomes the log's new snapshot.
+ *
+ * Commands print the same error messages as the menu, but no menu or
+ * prompts. All output is buffered and written in large blocks. After
+ * the last command a summary gives, per command, how often it ran, how
+ * often it failed and how long it took. Lines that are not valid
+ * commands (unknown, or with the wrong number of fields) count as
+ * failed commands, in a row of their own.
+ */
+public class BatchRunner {
+
+	private static final String STR_ERROR_UNKNOWN_COMMAND_PRINT_FORMAT = "ERROR: Unknown command at line %d - %s\n";
+	private static final String STR_ERROR_ARGUMENTS_PRINT_FORMAT = "ERROR: Wrong number of fields at line %d - %s\n";
+	private static final String STR_ERROR_EVENT_CREATE_FAILED_PRINT_FORMAT = "ERROR: Failed to create the event (%s)\n";
+	private static final String STR_ERROR_EVENT_REMOVE_FAILED_PRINT_FORMAT = "ERROR: Failed to remove the event (%s)\n";
+	private static final String STR_AUTO_MATCH_PRINT_FORMAT = "Auto-match created %d match(es)\n";
+	private static final String STR_ERROR_LOG_PRINT_FORMAT = "ERROR: Failed to write the log - %s\n";
+
+	private static final String STR_BATCH_SUMMARY_PRINT_FORMAT = 
+			"Batch summary: %d command(s), %d failed, %.3f ms\n"
+			+ "command                  runs   failed     total ms      mean us\n";
+	private static final String STR_BATCH_SUMMARY_COMMAND_PRINT_FORMAT = "%-20s %8d %8d %12.3f %12.1f\n";
+	private static final String STR_BATCH_SUMMARY_TOTALS_PRINT_FORMAT = "%d volunteer(s), %d event(s)\n";
+
+	/** summary row of the lines that are not valid commands */
+	private static final String STR_BATCH_SUMMARY_INVALID_COMMAND = "(invalid)";
+
+	/** the manager the commands work on; load-snapshot replaces it */
+	private EventManager manager;
+
+	/** where command output and the summary go */
+	private final PrintStream out;
+
+	/** per command name: runs, failures, nanoseconds */
+	private final Map<String, long[]> stats = new LinkedHashMap<String, long[]>();
+
+	/**
+	 * @param manager the manager the commands work on
+	 * @param out where command output and the summary go; should not flush on every line
+	 */
+	public BatchRunner(EventManager manager, PrintStream out) {
+		this.manager = manager;
+		this.out = out;
+	}
+
+	/**
+	 * Runs every command of the script, then prints the summary.
+	 * While it runs, System.out is redirected to the runner's output so
+	 * that display commands are buffered too.
+	 *
+	 * @param script the commands, one per line
+	 * @return the number of commands that failed, counting lines that are
+	 * not valid commands
+	 * @throws IOException if reading the script fails
+	 */
+	public int run(BufferedReader script) throws IOException {
+		PrintStream console = System.out;
+		System.setOut(out);
+		long start = System.nanoTime();
+		int commands = 0;
+		int failed = 0;
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = script.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split(";", -1);
+				String command = fields[0].trim().toLowerCase(Locale.ROOT);
+				if (command.equals("quit")) {
+					break;
+				}
+				for (int i = 1; i < fields.length; i++) {
+					fields[i] = fields[i].trim();
+				}
+				long commandStart = System.nanoTime();
+				Boolean succeeded = execute(command, fields, lineNumber, line);
+				if (succeeded == null) {
+					command = STR_BATCH_SUMMARY_INVALID_COMMAND;	//Not a command, already reported; counted as failed.
+					succeeded = false;
+				}
+				long[] stat = stats.get(command);
+				if (stat == null) {
+					stat = new long[3];
+					stats.put(command, stat);
+				}
+				stat[0]++;
+				if (!succeeded) {
+					stat[1]++;
+					failed++;
+				}
+				stat[2] += System.nanoTime() - commandStart;
+				commands++;
+			}
+			printSummary(commands, failed, System.nanoTime() - start);
+		} finally {
+			out.flush();
+			System.setOut(console);
+		}
+		return failed;
+	}
+
+	/**
+	 * @return the manager after the script ran; load-snapshot replaces the one given
+	 */
+	public EventManager getManager() {
+		return manager;
+	}
+
+	/**
+	 * Runs one command.
+	 *
+	 * @return whether it succeeded, or null if the line is not a valid command
+	 */
+	private Boolean execute(String command, String[] fields, int lineNumber, String line) {
+		int arguments;
+		switch (command) {
+			case "display-events": case "display-volunteers": case "auto-match":
+				arguments = 0;
+				break;
+			case "load": case "load-parallel": case "load-snapshot": case "save": case "save-snapshot":
+			case "remove-volunteer": case "remove-event":
+				arguments = 1;
+				break;
+			case "match": case "remove-match": case "add-volunteer":
+				arguments = 2;
+				break;
+			case "add-event":
+				arguments = 3;
+				break;
+			default:
+				out.format(STR_ERROR_UNKNOWN_COMMAND_PRINT_FORMAT, lineNumber, line);
+				return null;
+		}
+		if (fields.length != arguments + 1) {
+			out.format(STR_ERROR_ARGUMENTS_PRINT_FORMAT, lineNumber, line);
+			return null;
+		}
+
+		switch (command) {
+			case "load":
+			case "load-parallel":
+				try {
+					if (command.equals("load")) {
+						VolunteerMatch.readFromFile(manager, fields[1]);
+					}
+					else {
+						VolunteerMatch.readFromFileParallel(manager, fields[1]);
+					}
+					return true;
+				} catch (FileNotFoundException | UncheckedIOException e) {
+					out.format(Resource.STR_ERROR_READ_FILE_PRINT_FORMAT, fields[1]);
+					return false;
+				}
+			case "load-snapshot": {
+				EventManager loaded;
+				try {
+					loaded = VolunteerMatch.loadSnapshot(fields[1]);
+				} catch (FileNotFoundException | UncheckedIOException | IllegalArgumentException e) {	//Missing, unreadable or not a snapshot.
+					out.format(Resource.STR_ERROR_READ_FILE_PRINT_FORMAT, fields[1]);
+					return false;
+				}
+				loaded.setMetrics(manager.getMetrics());
+				WriteAheadLog log = manager.getLog();
+				manager = loaded;
+				if (log != null) {
+					try {
+						log.reopen(loaded);	//The log goes on with the loaded state.
+					} catch (IOException e) {
+						out.format(STR_ERROR_LOG_PRINT_FORMAT, e.getMessage());
+						return false;
+					}
+				}
+				return true;
+			}
+			case "save":
+			case "save-snapshot":
+				try {
+					if (command.equals("save")) {
+						VolunteerMatch.writeToFile(manager, fields[1]);
+					}
+					else {
+						VolunteerMatch.saveSnapshot(manager, fields[1]);
+					}
+					return true;
+				} catch (FileNotFoundException | UncheckedIOException e) {
+					out.format(Resource.STR_ERROR_WRITE_FILE_PRINT_FORMAT, fields[1]);
+					return false;
+				}
+			case "display-events":
+				manager.displayAllEvents();
+				return true;
+			case "display-volunteers":
+				manager.displayAllVolunteers();
+				return true;
+			case "match":
+				if (!manager.createMatch(fields[1], fields[2])) {
+					out.format(Resource.STR_ERROR_MATCH_CREATE_FAILED_PRINT_FORMAT, fields[1], fields[2]);
+					return false;
+				}
+				return true;
+			case "remove-match":
+				if (!manager.removeMatch(fields[1], fields[2])) {
+					out.format(Resource.STR_ERROR_MATCH_REMOVE_FAILED_PRINT_FORMAT, fields[1], fields[2]);
+					return false;
+				}
+				return true;
+			case "add-volunteer":
+				if (!manager.addVolunteer(fields[1], fields[2].split(",", -1))) {
+					out.format(Resource.STR_ERROR_VOLUNTEER_CREATE_FAILED_PRINT_FORMAT, fields[1]);
+					return false;
+				}
+				return true;
+			case "remove-volunteer":
+				if (!manager.removeVolunteer(fields[1])) {
+					out.format(Resource.STR_ERROR_VOLUNTEER_REMOVE_FAILED_PRINT_FORMAT, fields[1]);
+					return false;
+				}
+				return true;
+			case "add-event": {
+				boolean added;
+				try {
+					added = manager.addEvent(fields[1], fields[2], fields[3]);
+				} catch (NumberFormatException e) {
+					added = false;
+				}
+				if (!added) {
+					out.format(STR_ERROR_EVENT_CREATE_FAILED_PRINT_FORMAT, fields[1]);
+				}
+				return added;
+			}
+			case "remove-event":
+				if (!manager.removeEvent(fields[1])) {
+					out.format(STR_ERROR_EVENT_REMOVE_FAILED_PRINT_FORMAT, fields[1]);
+					return false;
+				}
+				return true;
+			case "auto-match":
+				out.format(STR_AUTO_MATCH_PRINT_FORMAT, manager.autoMatch());
+				return true;
+			default:
+				throw new IllegalStateException(command);
+		}
+	}
+
+	/**
+	 * Prints how often each command ran and failed and how long it took.
+	 */
+	private void printSummary(int commands, int failed, long nanos) {
+		out.format(Locale.ROOT, STR_BATCH_SUMMARY_PRINT_FORMAT, commands, failed, nanos / 1e6);
+		for (Map.Entry<String, long[]> entry : stats.entrySet()) {
+			long[] stat = entry.getValue();
+			out.format(Locale.ROOT, STR_BATCH_SUMMARY_COMMAND_PRINT_FORMAT, entry.getKey(), stat[0], stat[1],
+					stat[2] / 1e6, stat[2] / 1e3 / stat[0]);
+		}
+		out.format(STR_BATCH_SUMMARY_TOTALS_PRINT_FORMAT, manager.getVolunteers().size(), manager.getEvents().size());
+	}
+}
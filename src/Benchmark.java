@@ -0,0 +1,414 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Micro-benchmarks for the EventManager hot paths.
+ *
+ * Run with {@code java Benchmark [options]}:
+ * <pre>
+ * -sizes 1000,10000,100000,1000000
+ *                            numbers of volunteers (events are a tenth of that)
+ * -warmup 3                  untimed rounds per benchmark and size
+ * -iterations 5              timed rounds per benchmark and size
+ * -seed 1                    seed of the generated datasets
+ * -only createMatch,...      run only these benchmarks
+ * -out report.tsv            also save the results as a baseline file
+ * -baseline report.tsv       compare with a saved baseline
+ * -threshold 10              percent slowdown reported as a regression
+ * </pre>
+ * Each round runs one operation over the whole dataset (e.g. one
+ * createMatch per candidate pair) on a manager built beforehand outside
+ * the timer, and the report gives the median and best time per
+ * operation. With -baseline, a benchmark more than threshold percent
+ * slower than the baseline is marked REGRESSION and the exit status is 1.
+ *
+ * Datasets mimic the availability patterns of in2.txt: volunteers free
+ * every day, every 2nd to 7th day, in one or two week-long blocks, or on a
+ * few random days; events have limits of 1 to 20 and a third of their
+ * slots are pre-matched in the generated VE file.
+ *
+ * The default sizes span 1k to 1M volunteers. The 1M size needs about
+ * 1.5 GB of heap and takes several minutes with the default rounds; leave
+ * it out with -sizes for a quick run.
+ *
+ * readFromFile is reported per line of the file, so it also checks that
+ * loading scales linearly: its ns/op should stay about the same from the
+ * smallest size to the largest, where quadratic work in the loader would
+ * make it grow with the size.
+ */
+public class Benchmark {
+
+	/** names of all benchmarks, in the order they run */
+	private static final String[] BENCHMARKS = {
+		"addVolunteer", "addEvent", "findVolunteer", "findEvent", "createMatch",
+		"removeMatch", "removeVolunteer", "readFromFile", "writeToFile"
+	};
+
+	/** written to by every benchmark so the JIT cannot drop the work */
+	static volatile long sink;
+
+	public static void main(String[] args) throws IOException {
+		int[] sizes = {1000, 10000, 100000, 1000000};
+		int warmup = 3, iterations = 5;
+		long seed = 1;
+		double threshold = 10;
+		List<String> only = Arrays.asList(BENCHMARKS);
+		String out = null, baseline = null;
+		for (int i = 0; i < args.length; i++) {
+			String value = (i + 1 < args.length) ? args[i + 1] : null;
+			switch (args[i]) {
+				case "-sizes": sizes = parseInts(value); i++; break;
+				case "-warmup": warmup = Integer.parseInt(value); i++; break;
+				case "-iterations": iterations = Integer.parseInt(value); i++; break;
+				case "-seed": seed = Long.parseLong(value); i++; break;
+				case "-only": only = Arrays.asList(value.split(",")); i++; break;
+				case "-out": out = value; i++; break;
+				case "-baseline": baseline = value; i++; break;
+				case "-threshold": threshold = Double.parseDouble(value); i++; break;
+				default:
+					System.err.println("unknown option " + args[i]);
+					System.exit(2);
+			}
+		}
+		Map<String, Double> base = (baseline == null) ? null : readBaseline(baseline);
+
+		List<String> rows = new ArrayList<String>();
+		boolean regression = false;
+		System.out.printf(Locale.ROOT, "%-16s %9s %14s %14s %12s%s%n", "benchmark", "size", "median ns/op",
+				"best ns/op", "ops/s", (base == null) ? "" : "     change");
+		for (int size : sizes) {
+			Dataset data = new Dataset(size, seed);
+			File file = File.createTempFile("benchmark", ".txt");
+			file.deleteOnExit();
+			VolunteerMatch.writeToFile(data.loadedManager(true), file.getPath());
+			data.file = file;
+
+			for (String name : BENCHMARKS) {
+				if (!only.contains(name)) continue;
+				for (int i = 0; i < warmup; i++) {
+					run(name, data);
+				}
+				double[] nsPerOp = new double[iterations];
+				for (int i = 0; i < iterations; i++) {
+					nsPerOp[i] = run(name, data);
+				}
+				Arrays.sort(nsPerOp);
+				double median = nsPerOp[iterations / 2];
+				String change = "";
+				if (base != null && base.containsKey(name + "\t" + size)) {
+					double percent = (median / base.get(name + "\t" + size) - 1) * 100;
+					change = String.format(Locale.ROOT, " %+9.1f%%", percent);
+					if (percent > threshold) {
+						change += " REGRESSION";
+						regression = true;
+					}
+				}
+				System.out.printf(Locale.ROOT, "%-16s %9d %14.1f %14.1f %12.0f%s%n", name, size, median,
+						nsPerOp[0], 1e9 / median, change);
+				rows.add(String.format(Locale.ROOT, "%s\t%d\t%.1f", name, size, median));
+			}
+		}
+
+		if (out != null) {
+			try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8))) {
+				writer.println("# benchmark\tsize\tmedian ns/op");
+				for (String row : rows) {
+					writer.println(row);
+				}
+			}
+		}
+		if (regression) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Runs one timed round of a benchmark.
+	 *
+	 * @return nanoseconds per operation
+	 */
+	private static double run(String name, Dataset data) {
+		long checksum = 0;
+		int ops;
+		long start;
+		long elapsed;
+		switch (name) {
+			case "addVolunteer": {
+				EventManager manager = new EventManager();
+				ops = data.volunteerNames.length;
+				start = System.nanoTime();
+				for (int i = 0; i < ops; i++) {
+					if (manager.addVolunteer(data.volunteerNames[i], data.volunteerDates[i])) checksum++;
+				}
+				elapsed = System.nanoTime() - start;
+				break;
+			}
+			case "addEvent": {
+				EventManager manager = data.loadedManager(false);
+				ops = data.eventNames.length;
+				String[] names = data.extraEventNames;
+				start = System.nanoTime();
+				for (int i = 0; i < ops; i++) {
+					if (manager.addEvent(names[i], data.eventDates[i], data.eventLimits[i])) checksum++;
+				}
+				elapsed = System.nanoTime() - start;
+				break;
+			}
+			case "findVolunteer": {
+				EventManager manager = data.loadedManager(false);
+				String[] names = data.volunteerLookups;
+				ops = names.length;
+				start = System.nanoTime();
+				for (int i = 0; i < ops; i++) {
+					if (manager.findVolunteer(names[i]) != null) checksum++;
+				}
+				elapsed = System.nanoTime() - start;
+				break;
+			}
+			case "findEvent": {
+				EventManager manager = data.loadedManager(false);
+				String[] names = data.eventLookups;
+				ops = names.length;
+				start = System.nanoTime();
+				for (int i = 0; i < ops; i++) {
+					if (manager.findEvent(names[i]) != null) checksum++;
+				}
+				elapsed = System.nanoTime() - start;
+				break;
+			}
+			case "createMatch": {
+				EventManager manager = data.loadedManager(false);
+				ops = data.matchEvents.length;
+				start = System.nanoTime();
+				for (int i = 0; i < ops; i++) {
+					if (manager.createMatch(data.matchEvents[i], data.matchVolunteers[i])) checksum++;
+				}
+				elapsed = System.nanoTime() - start;
+				break;
+			}
+			case "removeMatch": {
+				EventManager manager = data.loadedManager(false);
+				for (int i = 0; i < data.matchEvents.length; i++) {
+					manager.createMatch(data.matchEvents[i], data.matchVolunteers[i]);
+				}
+				ops = data.matchEvents.length;
+				start = System.nanoTime();
+				for (int i = 0; i < ops; i++) {
+					if (manager.removeMatch(data.matchEvents[i], data.matchVolunteers[i])) checksum++;
+				}
+				elapsed = System.nanoTime() - start;
+				break;
+			}
+			case "removeVolunteer": {
+				EventManager manager = data.loadedManager(true);
+				String[] names = data.removals;
+				ops = names.length;
+				start = System.nanoTime();
+				for (int i = 0; i < ops; i++) {
+					if (manager.removeVolunteer(names[i])) checksum++;
+				}
+				elapsed = System.nanoTime() - start;
+				break;
+			}
+			case "readFromFile": {
+				EventManager manager = new EventManager();
+				ops = data.volunteerNames.length + data.eventNames.length;	// lines
+				start = System.nanoTime();
+				try {
+					VolunteerMatch.readFromFile(manager, data.file.getPath());
+				} catch (FileNotFoundException e) {
+					throw new UncheckedIOException(e);
+				}
+				elapsed = System.nanoTime() - start;
+				checksum = manager.getVolunteers().size();
+				break;
+			}
+			case "writeToFile": {
+				EventManager manager = data.loadedManager(true);
+				ops = data.volunteerNames.length + data.eventNames.length;	// lines
+				File file = new File(data.file.getPath() + ".out");
+				start = System.nanoTime();
+				try {
+					VolunteerMatch.writeToFile(manager, file.getPath());
+				} catch (FileNotFoundException e) {
+					throw new UncheckedIOException(e);
+				}
+				elapsed = System.nanoTime() - start;
+				checksum = file.length();
+				file.delete();
+				break;
+			}
+			default:
+				throw new IllegalArgumentException("unknown benchmark " + name);
+		}
+		sink += checksum;
+		return (double) elapsed / Math.max(1, ops);
+	}
+
+	/**
+	 * A generated set of volunteers, events and operations for one size.
+	 */
+	static class Dataset {
+		final String[] volunteerNames;
+		final String[][] volunteerDates;
+		final String[] eventNames, extraEventNames;
+		final int[] eventDates, eventLimits;
+		/** pairs for createMatch / removeMatch: the volunteer is available on the event's date */
+		final String[] matchEvents, matchVolunteers;
+		/** names to look up: 3/4 existing in changed case, 1/4 missing */
+		final String[] volunteerLookups, eventLookups;
+		/** a sample of volunteers for removeVolunteer */
+		final String[] removals;
+		/** the dataset as a VE file, with pre-matched volunteers */
+		File file;
+
+		Dataset(int volunteers, long seed) {
+			Random random = new Random(seed);
+			int events = Math.max(1, volunteers / 10);
+			volunteerNames = new String[volunteers];
+			volunteerDates = new String[volunteers][];
+			List<List<Integer>> byDate = new ArrayList<List<Integer>>();
+			for (int date = 0; date <= 30; date++) {
+				byDate.add(new ArrayList<Integer>());
+			}
+			for (int i = 0; i < volunteers; i++) {
+				volunteerNames[i] = "Volunteer " + Integer.toString(i, 36) + " " + (char) ('A' + random.nextInt(26));
+				boolean[] free = availability(random);
+				List<String> dates = new ArrayList<String>();
+				for (int date = 1; date <= 30; date++) {
+					if (free[date]) {
+						dates.add(Integer.toString(date));
+						byDate.get(date).add(i);
+					}
+				}
+				volunteerDates[i] = dates.isEmpty() ? new String[] {""} : dates.toArray(new String[dates.size()]);
+			}
+
+			eventNames = new String[events];
+			extraEventNames = new String[events];
+			eventDates = new int[events];
+			eventLimits = new int[events];
+			List<String> pairEvents = new ArrayList<String>(), pairVolunteers = new ArrayList<String>();
+			for (int i = 0; i < events; i++) {
+				eventNames[i] = "Event " + Integer.toString(i, 36);
+				extraEventNames[i] = "Extra event " + Integer.toString(i, 36);
+				eventDates[i] = 1 + random.nextInt(30);
+				eventLimits[i] = 1 + random.nextInt(20);
+				List<Integer> free = byDate.get(eventDates[i]);
+				// ask for more volunteers than the limit, so some requests are rejected
+				for (int k = 0; k < eventLimits[i] + 2 && !free.isEmpty(); k++) {
+					pairEvents.add(eventNames[i]);
+					pairVolunteers.add(volunteerNames[free.get(random.nextInt(free.size()))]);
+				}
+			}
+			matchEvents = pairEvents.toArray(new String[pairEvents.size()]);
+			matchVolunteers = pairVolunteers.toArray(new String[pairVolunteers.size()]);
+			volunteerLookups = lookups(volunteerNames, volunteers, random);
+			eventLookups = lookups(eventNames, volunteers, random);
+			removals = new String[Math.max(1, volunteers / 100)];
+			for (int i = 0; i < removals.length; i++) {
+				removals[i] = volunteerNames[random.nextInt(volunteers)];
+			}
+		}
+
+		/**
+		 * Picks one of the availability patterns seen in in2.txt.
+		 *
+		 * @return free[d] is true if the volunteer is available on date d
+		 */
+		private static boolean[] availability(Random random) {
+			boolean[] free = new boolean[31];
+			int pattern = random.nextInt(10);
+			if (pattern == 0) {					// every day
+				Arrays.fill(free, 1, 31, true);
+			}
+			else if (pattern <= 4) {			// every 2nd to 7th day
+				int step = 2 + random.nextInt(6);
+				for (int date = 1 + random.nextInt(step); date <= 30; date += step) free[date] = true;
+			}
+			else if (pattern <= 7) {			// one or two week-long blocks
+				for (int block = 0; block <= random.nextInt(2); block++) {
+					int first = 1 + random.nextInt(24);
+					Arrays.fill(free, first, first + 7, true);
+				}
+			}
+			else {								// a few random days
+				for (int k = 0; k < 1 + random.nextInt(4); k++) free[1 + random.nextInt(30)] = true;
+			}
+			return free;
+		}
+
+		private static String[] lookups(String[] names, int count, Random random) {
+			String[] lookups = new String[count];
+			for (int i = 0; i < count; i++) {
+				String name = names[random.nextInt(names.length)];
+				lookups[i] = (i % 4 == 3) ? name + " (missing)" : (i % 2 == 0) ? name.toUpperCase(Locale.ROOT) : name;
+			}
+			return lookups;
+		}
+
+		/**
+		 * Builds a manager holding every volunteer and event of the dataset.
+		 *
+		 * @param matched also create the first third of each event's match pairs
+		 */
+		EventManager loadedManager(boolean matched) {
+			EventManager manager = new EventManager();
+			for (int i = 0; i < volunteerNames.length; i++) {
+				manager.addVolunteer(volunteerNames[i], volunteerDates[i]);
+			}
+			for (int i = 0; i < eventNames.length; i++) {
+				manager.addEvent(eventNames[i], eventDates[i], eventLimits[i]);
+			}
+			if (matched) {
+				for (int i = 0; i < matchEvents.length; i += 3) {
+					manager.createMatch(matchEvents[i], matchVolunteers[i]);
+				}
+			}
+			return manager;
+		}
+	}
+
+	private static int[] parseInts(String list) {
+		String[] parts = list.split(",");
+		int[] values = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			values[i] = Integer.parseInt(parts[i].trim());
+		}
+		return values;
+	}
+
+	/**
+	 * Reads a file written with -out.
+	 *
+	 * @return median ns/op keyed by "benchmark\tsize"
+	 */
+	private static Map<String, Double> readBaseline(String path) throws IOException {
+		Map<String, Double> baseline = new HashMap<String, Double>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("#") || line.isEmpty()) continue;
+				String[] fields = line.split("\t");
+				baseline.put(fields[0] + "\t" + fields[1], Double.parseDouble(fields[2]));
+			}
+		}
+		return baseline;
+	}
+}
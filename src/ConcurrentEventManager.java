@@ -0,0 +1,609 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An EventManager that can be shared by many threads.
+ *
+ * Matches are created and removed concurrently; only operations that
+ * add or remove events and volunteers run exclusively.
+ * <ul>
+ * <li>A read-write lock guards the node lists and name indexes:
+ *     createMatch/removeMatch and lookups take it shared, everything that
+ *     adds or removes nodes takes it exclusively.</li>
+ * <li>Each event and volunteer maps to one of a fixed set of striped locks.
+ *     A match operation holds the stripes of both of its nodes (taken in
+ *     stripe order, so it cannot deadlock), which makes the same-date check
+ *     and the update of both adjacency lists atomic. createMatches holds
+ *     the stripes of every node in its batch the same way.</li>
+ * <li>All the checks of createMatch (availability, same date, limit) run
+ *     under both stripes, so two requests for the last slot cannot both
+ *     succeed, and a request that fails never keeps a valid one out.</li>
+ * <li>Each event also has a match counter, changed under its stripe and
+ *     never above its true number of matches: increased after a match is
+ *     made, decreased before one is removed. A request for a volunteer
+ *     who is free that finds the counter at the limit saw the event full,
+ *     so it fails without taking any lock.</li>
+ * <li>Display and file output work on a frozen copy of the graph. Every
+ *     change is bracketed by a started and a finished counter, seqlock
+ *     style: the copy is taken under the shared lock without blocking
+ *     match creation, and is kept only if no change started while it was
+ *     taken. So a copy never holds a half-applied match. The copy is
+ *     reused until the next change.</li>
+ * </ul>
+ */
+public class ConcurrentEventManager extends EventManager {
+
+	/** log2 of the number of stripe locks */
+	private static final int STRIPE_BITS = 8;
+
+	/** guards node lists, name indexes and the size of the per-id arrays */
+	private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+
+	/** locks shared by events and volunteers, chosen by hashing their ids */
+	private final ReentrantLock[] stripes = new ReentrantLock[1 << STRIPE_BITS];
+
+	/** per event id: matched volunteers, or fewer while a match is being removed */
+	private AtomicIntegerArray slots = new AtomicIntegerArray(16);
+
+	/** number of optimistic copies tried before a reader takes the exclusive lock */
+	private static final int OPTIMISTIC_COPY_ATTEMPTS = 8;
+
+	/** number of changes begun and number of changes completed; equal when none is in flight */
+	private final AtomicLong changesStarted = new AtomicLong(), changesFinished = new AtomicLong();
+
+	/** the last frozen copy handed to readers, or null */
+	private volatile Frozen frozen;
+
+	/**
+	 * Constructor for a ConcurrentEventManager instance
+	 */
+	public ConcurrentEventManager(){
+		this(AvailabilityCalendar.DEFAULT_HORIZON);
+	}
+
+	/**
+	 * Constructor for a ConcurrentEventManager whose dates run from 1 to the given horizon
+	 *
+	 * @param horizon the last valid date, from 1 to AvailabilityCalendar.MAX_HORIZON
+	 */
+	public ConcurrentEventManager(int horizon){
+		super(horizon);
+		for (int i = 0; i < stripes.length; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+	}
+
+	@Override
+	public boolean addEvent(String name, int eventDate, int maxVolunteers){
+		structureLock.writeLock().lock();
+		try {
+			beginChange();
+			if (!super.addEvent(name, eventDate, maxVolunteers)) {
+				return false;
+			}
+			resetSlots(super.lookupEvent(name));
+			return true;
+		} finally {
+			endChange();
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	boolean addVolunteer(String name, int[] dates, int dateCount){
+		structureLock.writeLock().lock();
+		try {
+			beginChange();
+			return super.addVolunteer(name, dates, dateCount);
+		} finally {
+			endChange();
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	void restoreEvent(Event event){
+		structureLock.writeLock().lock();
+		try {
+			beginChange();
+			super.restoreEvent(event);
+			resetSlots(event);
+		} finally {
+			endChange();
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	void restoreVolunteer(Volunteer vol){
+		structureLock.writeLock().lock();
+		try {
+			beginChange();
+			super.restoreVolunteer(vol);
+		} finally {
+			endChange();
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean removeEvent(String name){
+		structureLock.writeLock().lock();
+		try {
+			Event event = super.lookupEvent(name);
+			if (event == null) {
+				return false;
+			}
+			beginChange();
+			try {
+				super.removeEvent(name);
+			} finally {
+				endChange();
+			}
+			resyncSlots(event.getDate());	//Auto-rematch may have moved its volunteers to other events.
+			return true;
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean removeVolunteer(String name){
+		structureLock.writeLock().lock();
+		try {
+			Volunteer vol = super.lookupVolunteer(name);
+			if (vol == null) {
+				return false;
+			}
+			List<GraphNode> events = new ArrayList<GraphNode>(vol.getAdjacentNodes());
+			beginChange();
+			try {
+				super.removeVolunteer(name);
+			} finally {
+				endChange();
+			}
+			for (GraphNode event : events) {
+				slots.set(event.id, event.getAdjacentNodes().size());
+			}
+			return true;
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void setAutoRematch(boolean enabled){
+		structureLock.writeLock().lock();
+		try {
+			super.setAutoRematch(enabled);
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean setVolunteerAvailable(String volunteerName, int date){
+		structureLock.writeLock().lock();
+		try {
+			beginChange();
+			try {
+				if (!super.setVolunteerAvailable(volunteerName, date)) {
+					return false;
+				}
+			} finally {
+				endChange();
+			}
+			resyncSlots(date);
+			return true;
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean setVolunteerUnavailable(String volunteerName, int date){
+		structureLock.writeLock().lock();
+		try {
+			beginChange();
+			try {
+				if (!super.setVolunteerUnavailable(volunteerName, date)) {
+					return false;
+				}
+			} finally {
+				endChange();
+			}
+			resyncSlots(date);
+			return true;
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	Event lookupEvent(String name){
+		structureLock.readLock().lock();
+		try {
+			return super.lookupEvent(name);
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	Volunteer lookupVolunteer(String name){
+		structureLock.readLock().lock();
+		try {
+			return super.lookupVolunteer(name);
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<Volunteer> listCandidates(String eventName){
+		structureLock.readLock().lock();
+		try {
+			return super.listCandidates(eventName);
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads the page under the shared lock, so matches go on meanwhile and
+	 * the match filters see each event and volunteer as of when it is read.
+	 */
+	@Override
+	public NodeQuery.Page<Event> queryEvents(NodeQuery query){
+		structureLock.readLock().lock();
+		try {
+			return super.queryEvents(query);
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public NodeQuery.Page<Volunteer> queryVolunteers(NodeQuery query){
+		structureLock.readLock().lock();
+		try {
+			return super.queryVolunteers(query);
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	boolean createMatchByName(String eventName, String volunteerName){
+		structureLock.readLock().lock();
+		try {
+			Event event = super.lookupEvent(eventName);
+			Volunteer vol = super.lookupVolunteer(volunteerName);
+			if (event == null || vol == null) {
+				reject(ManagerMetrics.Operation.CREATE_MATCH, ManagerMetrics.Rejection.UNKNOWN_NAME);
+				return false;
+			}
+			return createMatch(event, vol);
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Checks and creates the match under the stripes of both nodes, so the
+	 * checks and the change are one step. Must be called with the
+	 * structure lock held.
+	 */
+	@Override
+	boolean createMatch(Event event, Volunteer vol){
+		int date = event.getDate();
+		if (vol.isAvailable(date) && !vol.isBookedOn(date) && slots.get(event.id) >= event.getLimit()) {
+			reject(ManagerMetrics.Operation.CREATE_MATCH, ManagerMetrics.Rejection.OVER_LIMIT);
+			return false;	//Event is full, no need to lock anything.
+		}
+		lockStripes(event, vol);
+		beginChange();
+		try {
+			if (!super.createMatch(event, vol)) {
+				return false;
+			}
+			slots.incrementAndGet(event.id);
+			return true;
+		} finally {
+			endChange();
+			unlockStripes(event, vol);
+		}
+	}
+
+	@Override
+	public boolean createMatches(String[] eventNames, String[] volunteerNames){
+		structureLock.readLock().lock();
+		try {
+			return super.createMatches(eventNames, volunteerNames);
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Checks and applies the batch while holding the stripes of every node
+	 * in it. Must be called with the structure lock held.
+	 */
+	@Override
+	boolean createMatches(Event[] events, Volunteer[] volunteers){
+		int[] batchStripes = new int[events.length * 2];
+		for (int i = 0; i < events.length; i++) {
+			batchStripes[2 * i] = stripeOf(events[i].id * 2);
+			batchStripes[2 * i + 1] = stripeOf(volunteers[i].id * 2 + 1);
+		}
+		Arrays.sort(batchStripes);
+		int count = 0;		//Number of distinct stripes, moved to the front.
+		for (int i = 0; i < batchStripes.length; i++) {
+			if (count == 0 || batchStripes[count - 1] != batchStripes[i]) {
+				batchStripes[count++] = batchStripes[i];
+			}
+		}
+
+		for (int i = 0; i < count; i++) {
+			stripes[batchStripes[i]].lock();
+		}
+		beginChange();
+		try {
+			if (!super.createMatches(events, volunteers)) {
+				return false;
+			}
+			for (Event event : events) {
+				slots.incrementAndGet(event.id);
+			}
+			return true;
+		} finally {
+			endChange();
+			for (int i = count - 1; i >= 0; i--) {
+				stripes[batchStripes[i]].unlock();
+			}
+		}
+	}
+
+	@Override
+	boolean removeMatchByName(String eventName, String volunteerName){
+		structureLock.readLock().lock();
+		try {
+			Event event = super.lookupEvent(eventName);
+			Volunteer vol = super.lookupVolunteer(volunteerName);
+			if (event == null || vol == null) {
+				reject(ManagerMetrics.Operation.REMOVE_MATCH, ManagerMetrics.Rejection.UNKNOWN_NAME);
+				return false;
+			}
+			return removeMatch(event, vol);
+		} finally {
+			structureLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the match under the stripes of both nodes. The counter drops
+	 * first, so it never shows the event fuller than it is.
+	 * Must be called with the structure lock held.
+	 */
+	@Override
+	boolean removeMatch(Event event, Volunteer vol){
+		lockStripes(event, vol);
+		beginChange();
+		try {
+			slots.decrementAndGet(event.id);
+			if (!super.removeMatch(event, vol)) {
+				slots.incrementAndGet(event.id);	//Was not matched after all.
+				return false;
+			}
+			return true;
+		} finally {
+			endChange();
+			unlockStripes(event, vol);
+		}
+	}
+
+	@Override
+	public int autoMatch(){
+		structureLock.writeLock().lock();
+		try {
+			beginChange();
+			int created;
+			try {
+				created = super.autoMatch();
+			} finally {
+				endChange();
+			}
+			for (Event event : getEvents()) {
+				slots.set(event.id, event.getAdjacentNodes().size());
+			}
+			return created;
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public int autoMatch(MatchScorer scorer){
+		structureLock.writeLock().lock();
+		try {
+			beginChange();
+			int created;
+			try {
+				created = super.autoMatch(scorer);
+			} finally {
+				endChange();
+			}
+			for (Event event : getEvents()) {
+				slots.set(event.id, event.getAdjacentNodes().size());
+			}
+			return created;
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void displayAllEvents(){
+		frozenCopy().displayAllEvents();
+	}
+
+	@Override
+	public void displayAllVolunteers(){
+		frozenCopy().displayAllVolunteers();
+	}
+
+	@Override
+	public String toStringAllVolunteers(){
+		return frozenCopy().toStringAllVolunteers();
+	}
+
+	@Override
+	public String toStringAllEvents(){
+		return frozenCopy().toStringAllEvents();
+	}
+
+	@Override
+	public void writeAllVolunteers(Writer out) throws IOException {
+		frozenCopy().writeAllVolunteers(out);
+	}
+
+	@Override
+	public void writeAllEvents(Writer out) throws IOException {
+		frozenCopy().writeAllEvents(out);
+	}
+
+	/**
+	 * Returns a copy of the graph that reflects every change finished
+	 * before some point during this call, and no partial change.
+	 *
+	 * The copy is first taken optimistically under the shared lock, so match
+	 * creation goes on meanwhile; it is thrown away (and retried) if a change
+	 * was in flight or started during the copy. After a few failed attempts
+	 * the copy is taken under the exclusive lock instead.
+	 *
+	 * @return a frozen copy; callers must not modify it
+	 */
+	private EventManager frozenCopy(){
+		Frozen current = frozen;
+		long version = changesFinished.get();
+		if (current != null && current.version == version && changesStarted.get() == version) {
+			return current.manager;		//Nothing changed since the last copy.
+		}
+
+		structureLock.readLock().lock();
+		try {
+			for (int attempt = 0; attempt < OPTIMISTIC_COPY_ATTEMPTS; attempt++) {
+				version = changesFinished.get();
+				if (changesStarted.get() != version) {
+					Thread.yield();		//A change is in flight; let it finish.
+					continue;
+				}
+				EventManager copy;
+				try {
+					copy = super.copy();
+				} catch (RuntimeException e) {
+					continue;			//Read a list while it was being changed.
+				}
+				VarHandle.acquireFence();	//Keep the reads of the copy before the check below.
+				if (changesStarted.get() == version) {
+					return publish(copy, version);
+				}
+			}
+		} finally {
+			structureLock.readLock().unlock();
+		}
+
+		structureLock.writeLock().lock();
+		try {
+			return publish(super.copy(), changesFinished.get());
+		} finally {
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	private EventManager publish(EventManager copy, long version){
+		frozen = new Frozen(copy, version);
+		return copy;
+	}
+
+	/**
+	 * Marks the start of a change to the graph. Must be paired with endChange.
+	 */
+	private void beginChange(){
+		changesStarted.incrementAndGet();
+	}
+
+	private void endChange(){
+		changesFinished.incrementAndGet();
+	}
+
+	/**
+	 * Makes room for the event's id in the slot counters and sets its count
+	 * to its current matches. Must be called with the write lock held.
+	 */
+	private void resetSlots(Event event){
+		if (event.id >= slots.length()) {
+			AtomicIntegerArray bigger = new AtomicIntegerArray(Math.max(event.id + 1, slots.length() * 2));
+			for (int i = 0; i < slots.length(); i++) {
+				bigger.set(i, slots.get(i));
+			}
+			slots = bigger;
+		}
+		slots.set(event.id, event.getAdjacentNodes().size());
+	}
+
+	/**
+	 * Sets the slot counters of the events on the date to their current
+	 * matches. Must be called with the write lock held.
+	 */
+	private void resyncSlots(int date){
+		for (Event event : getEventsOn(date)) {
+			slots.set(event.id, event.getAdjacentNodes().size());
+		}
+	}
+
+	/**
+	 * @return the index of the stripe for an event (key = 2 * id) or volunteer (key = 2 * id + 1)
+	 */
+	private static int stripeOf(int key){
+		return (key * 0x9E3779B9) >>> (32 - STRIPE_BITS);
+	}
+
+	/**
+	 * Locks the stripes of an event and a volunteer, lowest stripe first.
+	 */
+	private void lockStripes(Event event, Volunteer vol){
+		int a = stripeOf(event.id * 2);
+		int b = stripeOf(vol.id * 2 + 1);
+		stripes[Math.min(a, b)].lock();
+		if (a != b) stripes[Math.max(a, b)].lock();
+	}
+
+	private void unlockStripes(Event event, Volunteer vol){
+		int a = stripeOf(event.id * 2);
+		int b = stripeOf(vol.id * 2 + 1);
+		if (a != b) stripes[Math.max(a, b)].unlock();
+		stripes[Math.min(a, b)].unlock();
+	}
+
+	/**
+	 * A frozen copy of the graph and the number of changes it includes.
+	 */
+	private static final class Frozen {
+		final EventManager manager;
+		final long version;
+
+		Frozen(EventManager manager, long version){
+			this.manager = manager;
+			this.version = version;
+		}
+	}
+}
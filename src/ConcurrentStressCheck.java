@@ -0,0 +1,345 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stress test for ConcurrentEventManager.
+ *
+ * Many threads create and remove matches at random on a small, crowded
+ * graph (few dates, low limits, so most requests race for the same slots
+ * and dates), mixed with batch createMatches calls, availability changes
+ * and volunteers being removed and added back. After every round, once
+ * all threads have stopped, the graph is checked:
+ * <ul>
+ * <li>no event has more volunteers than its limit;</li>
+ * <li>no volunteer is matched to two events on one date, and its booked
+ *     dates are exactly the dates of its matched events, all of which it is
+ *     available on;</li>
+ * <li>every match is on both sides: each volunteer of an event lists the
+ *     event and each event of a volunteer lists the volunteer, and both are
+ *     still in the manager;</li>
+ * <li>no slot leaked: every event below its limit still accepts one of
+ *     its candidates.</li>
+ * </ul>
+ * An exception thrown by any operation also counts as a violation.
+ *
+ * Alongside the random threads, each round also checks that no valid
+ * request is ever rejected. Every contested event has a limit of 1 and
+ * its own owner volunteer: one thread matches and unmatches the owner
+ * over and over, and every call must succeed, since nothing else can
+ * take the slot. Meanwhile another thread keeps asking for the same slot
+ * for a volunteer who is not available on that date; every such request
+ * must fail, and must not make the owner's requests fail either.
+ *
+ * Run with {@code java ConcurrentStressCheck [options]}:
+ * <pre>
+ * -threads 8          threads per round
+ * -rounds 20          rounds, each followed by the checks
+ * -operations 20000   operations per thread and round
+ * -seed 1             seed of the random operations
+ * </pre>
+ * Prints the result of every round and exits with status 1 if any check failed.
+ */
+public class ConcurrentStressCheck {
+
+	private static final int VOLUNTEERS = 300, EVENTS = 60, HORIZON = 5, MAX_LIMIT = 4;
+
+	/** events with a limit of 1 whose slot only their owner may take */
+	private static final int CONTESTED = 4;
+
+	private static int failures;
+
+	public static void main(String[] args) throws InterruptedException {
+		int threads = 8, rounds = 20, operations = 20000;
+		long seed = 1;
+		for (int i = 0; i < args.length; i += 2) {
+			String value = (i + 1 < args.length) ? args[i + 1] : "";
+			switch (args[i]) {
+				case "-threads": threads = Integer.parseInt(value); break;
+				case "-rounds": rounds = Integer.parseInt(value); break;
+				case "-operations": operations = Integer.parseInt(value); break;
+				case "-seed": seed = Long.parseLong(value); break;
+				default:
+					System.err.println("unknown option " + args[i]);
+					System.exit(2);
+			}
+		}
+
+		Random random = new Random(seed);
+		ConcurrentEventManager manager = new ConcurrentEventManager(HORIZON);
+		for (int v = 0; v < VOLUNTEERS; v++) {
+			manager.addVolunteer(volunteerName(v), randomDates(random));
+		}
+		for (int e = 0; e < EVENTS; e++) {
+			manager.addEvent(eventName(e), 1 + random.nextInt(HORIZON), 1 + random.nextInt(MAX_LIMIT));
+		}
+		for (int c = 0; c < CONTESTED; c++) {
+			int date = 1 + c % HORIZON;
+			List<String> otherDates = new ArrayList<String>();
+			for (int d = 1; d <= HORIZON; d++) {
+				if (d != date) {
+					otherDates.add(Integer.toString(d));
+				}
+			}
+			manager.addEvent("Contested " + c, date, 1);
+			manager.addVolunteer("Owner " + c, new String[] {Integer.toString(date)});
+			manager.addVolunteer("Unavailable " + c, otherDates.toArray(new String[otherDates.size()]));
+		}
+
+		for (int round = 1; round <= rounds; round++) {
+			int before = failures;
+			AtomicLong matchesCreated = new AtomicLong();
+			List<Thread> workers = new ArrayList<Thread>();
+			for (int t = 0; t < threads; t++) {
+				Worker worker = new Worker(manager, seed * 1000003 + round * 131 + t, operations, matchesCreated);
+				Thread thread = new Thread(worker, "stress-" + t);
+				thread.setUncaughtExceptionHandler((failed, e) -> fail(failed.getName() + " threw " + e));
+				workers.add(thread);
+			}
+			for (int c = 0; c < CONTESTED; c++) {
+				Contest contest = new Contest(manager, c, operations);
+				Thread owner = new Thread(contest::own, "owner-" + c);
+				Thread intruder = new Thread(contest::intrude, "intruder-" + c);
+				owner.setUncaughtExceptionHandler((failed, e) -> fail(failed.getName() + " threw " + e));
+				intruder.setUncaughtExceptionHandler((failed, e) -> fail(failed.getName() + " threw " + e));
+				workers.add(owner);
+				workers.add(intruder);
+			}
+			for (Thread worker : workers) {
+				worker.start();
+			}
+			for (Thread worker : workers) {
+				worker.join();
+			}
+			checkLimits(manager);
+			checkDates(manager);
+			checkEdges(manager);
+			checkSlots(manager);
+			System.out.println("round " + round + ": " + matchesCreated.get() + " matches created, "
+					+ (failures == before ? "ok" : (failures - before) + " violation(s)"));
+		}
+		System.out.println(failures == 0 ? "all checks passed" : failures + " violation(s)");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Runs random operations on the shared manager.
+	 */
+	private static final class Worker implements Runnable {
+		private final EventManager manager;
+		private final Random random;
+		private final int operations;
+		private final AtomicLong matchesCreated;
+
+		Worker(EventManager manager, long seed, int operations, AtomicLong matchesCreated) {
+			this.manager = manager;
+			this.random = new Random(seed);
+			this.operations = operations;
+			this.matchesCreated = matchesCreated;
+		}
+
+		@Override
+		public void run() {
+			for (int i = 0; i < operations; i++) {
+				int op = random.nextInt(100);
+				String event = eventName(random.nextInt(EVENTS));
+				String vol = volunteerName(random.nextInt(VOLUNTEERS));
+				if (op < 50) {
+					if (manager.createMatch(event, vol)) {
+						matchesCreated.incrementAndGet();
+					}
+				}
+				else if (op < 85) {
+					manager.removeMatch(event, vol);
+				}
+				else if (op < 92) {
+					String[] events = new String[2 + random.nextInt(3)];
+					String[] vols = new String[events.length];
+					for (int b = 0; b < events.length; b++) {
+						events[b] = eventName(random.nextInt(EVENTS));
+						vols[b] = volunteerName(random.nextInt(VOLUNTEERS));
+					}
+					if (manager.createMatches(events, vols)) {
+						matchesCreated.addAndGet(events.length);
+					}
+				}
+				else if (op < 96) {
+					manager.setVolunteerAvailable(vol, 1 + random.nextInt(HORIZON));
+				}
+				else if (op < 99) {
+					manager.setVolunteerUnavailable(vol, 1 + random.nextInt(HORIZON));
+				}
+				else if (manager.removeVolunteer(vol)) {
+					manager.addVolunteer(vol, randomDates(random));
+				}
+			}
+		}
+	}
+
+	/**
+	 * One contested event: its owner's requests must all succeed, the
+	 * intruder's must all fail.
+	 */
+	private static final class Contest {
+		private final EventManager manager;
+		private final String event, owner, intruder;
+		private final int operations;
+		private volatile boolean ownerDone;
+
+		Contest(EventManager manager, int c, int operations) {
+			this.manager = manager;
+			this.event = "Contested " + c;
+			this.owner = "Owner " + c;
+			this.intruder = "Unavailable " + c;
+			this.operations = operations;
+		}
+
+		void own() {
+			int rejected = 0;
+			try {
+				for (int i = 0; i < operations; i++) {
+					if (!manager.createMatch(event, owner)) {
+						rejected++;
+					}
+					else if (!manager.removeMatch(event, owner)) {
+						fail(event + " did not remove its owner's match");
+					}
+				}
+			} finally {
+				ownerDone = true;
+			}
+			if (rejected > 0) {
+				fail(event + " rejected " + rejected + " of " + operations + " valid requests of its owner");
+			}
+		}
+
+		void intrude() {
+			do {
+				if (manager.createMatch(event, intruder)) {
+					fail(event + " matched " + intruder + ", who is not available on its date");
+					manager.removeMatch(event, intruder);
+				}
+			} while (!ownerDone);
+		}
+	}
+
+	private static void checkLimits(EventManager manager) {
+		for (Event event : manager.getEvents()) {
+			if (event.getAdjacentNodes().size() > event.getLimit()) {
+				fail(event.getName() + " has " + event.getAdjacentNodes().size() + " volunteers, limit " + event.getLimit());
+			}
+		}
+	}
+
+	private static void checkDates(EventManager manager) {
+		for (Volunteer vol : manager.getVolunteers()) {
+			boolean[] matchedOn = new boolean[HORIZON + 1];
+			for (GraphNode node : vol.getAdjacentNodes()) {
+				int date = ((Event) node).getDate();
+				if (matchedOn[date]) {
+					fail(vol.getName() + " is matched twice on date " + date);
+				}
+				matchedOn[date] = true;
+				if (!vol.isAvailable(date)) {
+					fail(vol.getName() + " is matched on date " + date + " but not available");
+				}
+			}
+			for (int date = 1; date <= HORIZON; date++) {
+				if (vol.isBookedOn(date) != matchedOn[date]) {
+					fail(vol.getName() + " booked dates disagree with its events on date " + date);
+				}
+			}
+		}
+	}
+
+	private static void checkEdges(EventManager manager) {
+		Map<GraphNode, Boolean> present = new IdentityHashMap<GraphNode, Boolean>();
+		for (Volunteer vol : manager.getVolunteers()) {
+			present.put(vol, true);
+		}
+		for (Event event : manager.getEvents()) {
+			present.put(event, true);
+		}
+		for (Event event : manager.getEvents()) {
+			for (GraphNode vol : event.getAdjacentNodes()) {
+				if (!present.containsKey(vol)) {
+					fail(event.getName() + " lists the removed volunteer " + vol.getName());
+				}
+				else if (!containsNode(vol.getAdjacentNodes(), event)) {
+					fail(event.getName() + " lists " + vol.getName() + " but not the other way round");
+				}
+			}
+		}
+		for (Volunteer vol : manager.getVolunteers()) {
+			for (GraphNode event : vol.getAdjacentNodes()) {
+				if (!present.containsKey(event)) {
+					fail(vol.getName() + " lists the removed event " + event.getName());
+				}
+				else if (!containsNode(event.getAdjacentNodes(), vol)) {
+					fail(vol.getName() + " lists " + event.getName() + " but not the other way round");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fills one free slot of every event that has a candidate, then frees it
+	 * again. A failure means a slot was reserved and never given back.
+	 */
+	private static void checkSlots(EventManager manager) {
+		for (Event event : manager.getEvents()) {
+			if (!event.isBelowLimit()) {
+				continue;
+			}
+			List<Volunteer> candidates = manager.listCandidates(event.getName());
+			if (candidates.isEmpty()) {
+				continue;
+			}
+			String vol = candidates.get(0).getName();
+			if (!manager.createMatch(event.getName(), vol)) {
+				fail(event.getName() + " is below its limit but rejects the candidate " + vol);
+			}
+			else {
+				manager.removeMatch(event.getName(), vol);
+			}
+		}
+	}
+
+	private static boolean containsNode(List<GraphNode> nodes, GraphNode node) {
+		for (GraphNode other : nodes) {
+			if (other == node) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static synchronized void fail(String violation) {
+		System.out.println("VIOLATION " + violation);
+		failures++;
+	}
+
+	private static String volunteerName(int v) {
+		return "Volunteer " + v;
+	}
+
+	private static String eventName(int e) {
+		return "Event " + e;
+	}
+
+	private static String[] randomDates(Random random) {
+		List<String> dates = new ArrayList<String>();
+		for (int date = 1; date <= HORIZON; date++) {
+			if (random.nextInt(3) > 0) {
+				dates.add(Integer.toString(date));
+			}
+		}
+		if (dates.isEmpty()) {
+			dates.add(Integer.toString(1 + random.nextInt(HORIZON)));
+		}
+		return dates.toArray(new String[dates.size()]);
+	}
+}
@@ -16,6 +16,10 @@ public class Event extends GraphNode {
 	
 	/** The maximum number of volunteers for this event */
 	private int limit;
+	
+	/** Resource display formats, split at their conversions */
+	private static final String[] DISPLAY_FORMAT = splitFormat(Resource.STR_DISPLAY_EVENT_PRINT_FORMAT);
+	private static final String[] DISPLAY_VOLUNTEER_FORMAT = splitFormat(Resource.STR_DISPLAY_EVENT_VOLUNTEERS_PRINT_FORMAT);
 
 	/**
 	 * Constructor for an Event instance
@@ -25,14 +29,26 @@ public class Event extends GraphNode {
 	 * @param limit the maximum number of volunteers for this event
 	 */
 	public Event(String name, int date, int limit) {
+		this(name, date, limit, AvailabilityCalendar.DEFAULT_HORIZON);
+	}
+
+	/**
+	 * Constructor for an Event whose date may be anywhere from 1 to the given horizon
+	 * 
+	 * @param name a case-insensitive event name
+	 * @param date an integer value between 1 and horizon for when this event occurs
+	 * @param limit the maximum number of volunteers for this event
+	 * @param horizon the last valid date
+	 */
+	public Event(String name, int date, int limit, int horizon) {
 		super(name);
-		if(date < 1 || date > 30 || limit < 0) throw new IllegalArgumentException();
+		if(date < 1 || date > horizon || limit < 0) throw new IllegalArgumentException();
 		this.date = date;
 		this.limit = limit;
 	}
 
 	/** 
-	 * Returns the date (1-30) that this event occurs 
+	 * Returns the date (1 to the horizon) that this event occurs 
 	 * 
 	 * @return the date this event occurs
 	 */
@@ -82,19 +98,31 @@ public class Event extends GraphNode {
 	@Override
 	public String toString() {
 		StringBuilder strBuilder = new StringBuilder();
-		strBuilder.append(String.format(Resource.STR_DISPLAY_EVENT_PRINT_FORMAT, getName(), getDate(), getLimit()));
+		appendDisplayString(strBuilder);
+		return strBuilder.toString();
+	}
+	
+	/**
+	 * Appends the same text as toString, filling in the Resource formats by hand.
+	 */
+	@Override
+	void appendDisplayString(StringBuilder out) {
+		out.append(DISPLAY_FORMAT[0]).append(getName())
+			.append(DISPLAY_FORMAT[1]).append(getDate())
+			.append(DISPLAY_FORMAT[2]).append(getLimit())
+			.append(DISPLAY_FORMAT[3]);
 		// matched volunteers
 		List<GraphNode> adjList = getAdjacentNodes();
 		if(adjList.isEmpty()){
-			strBuilder.append(Resource.STR_DISPLAY_NO_MATCHES);
+			out.append(Resource.STR_DISPLAY_NO_MATCHES);
 		}
 		else {
 			for(int i=0;i<adjList.size();i++){
-				Volunteer v = (Volunteer) adjList.get(i);
-				strBuilder.append(String.format(Resource.STR_DISPLAY_EVENT_VOLUNTEERS_PRINT_FORMAT, i+1, v.getName()));
+				out.append(DISPLAY_VOLUNTEER_FORMAT[0]).append(i+1)
+					.append(DISPLAY_VOLUNTEER_FORMAT[1]).append(adjList.get(i).getName())
+					.append(DISPLAY_VOLUNTEER_FORMAT[2]);
 			}
 		}
-		return strBuilder.toString();
 	}
 	
 	/**
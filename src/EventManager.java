@@ -16,10 +16,18 @@
 //  
 //////////////////////////// 80 columns wide //////////////////////////////////
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * EventManager manages a list of events and a separate list of volunteers.
@@ -36,30 +44,100 @@ import java.util.List;
  */
 public class EventManager {
 	
+	/** the last valid date; dates run from 1 to horizon */
+	private int horizon;
+	
 	/** the list of events */
 	private List<Event> eventList;
 
 	/** the list of volunteers */
 	private List<Volunteer> volunteerList;
+	
+	/** events keyed by their case-folded name, kept in step with eventList */
+	private Map<String, Event> eventIndex;
+	
+	/** volunteers keyed by their case-folded name, kept in step with volunteerList */
+	private Map<String, Volunteer> volunteerIndex;
+	
+	/** events grouped by date (index i holds the events on date i), each group sorted by name */
+	private List<List<Event>> eventsByDate;
+	
+	/** the matches, and the node of each id stored in GraphNode.id */
+	private IntGraph graph;
+	
+	/**
+	 * Candidate index: bit v of entry i is set iff the volunteer with id v is
+	 * available on date i and not matched to any event on it. Each bitset is
+	 * only used while synchronized on it, so matches made concurrently by
+	 * ConcurrentEventManager can update it safely.
+	 */
+	private List<BitSet> candidatesByDate;
+	
+	/** true if removals and availability changes refill the slots they free up */
+	private boolean autoRematch;
+	
+	/** characters of display output collected before each print to System.out */
+	private static final int DISPLAY_CHUNK_SIZE = 1 << 16;
+	
+	/** Resource headers of the displays, split at their conversions */
+	private static final String[] ALL_EVENTS_FORMAT = GraphNode.splitFormat(Resource.STR_DISPLAY_ALL_EVENTS_PRINT_FORMAT);
+	private static final String[] ALL_VOLUNTEERS_FORMAT = GraphNode.splitFormat(Resource.STR_DISPLAY_ALL_VOLUNTEERS_PRINT_FORMAT);
+	
+	/** longest candidate arrays autoMatch(MatchScorer) grows to */
+	private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+	
+	/** widest date range that queryEvents reads from eventsByDate instead of eventList */
+	private static final int QUERY_MERGE_MAX_DATES = 64;
+	
+	/** where operations are recorded, or null while metrics are off */
+	private volatile ManagerMetrics metrics;
+	
+	/** where changes are logged, or null if there is no write-ahead log */
+	private volatile WriteAheadLog log;
 
 	/**
-	 * Constructor for an EventManager instance
+	 * Constructor for an EventManager instance, with dates from 1 to 30
 	 */
 	public EventManager(){
+		this(AvailabilityCalendar.DEFAULT_HORIZON);
+	}
+	
+	/**
+	 * Constructor for an EventManager instance whose dates run from 1 to
+	 * the given horizon, e.g. 366 to schedule a whole year.
+	 * 
+	 * @param horizon the last valid date, from 1 to AvailabilityCalendar.MAX_HORIZON
+	 * @throws IllegalArgumentException if horizon is out of that range
+	 */
+	public EventManager(int horizon){
+		if (horizon < 1 || horizon > AvailabilityCalendar.MAX_HORIZON) {
+			throw new IllegalArgumentException();
+		}
+		this.horizon = horizon;
 		this.eventList = new ArrayList<Event>();
 		this.volunteerList = new ArrayList<Volunteer>();
+		this.eventIndex = new HashMap<String, Event>();
+		this.volunteerIndex = new HashMap<String, Volunteer>();
+		this.eventsByDate = new ArrayList<List<Event>>(horizon + 1);
+		for (int date = 0; date <= horizon; date++) {
+			eventsByDate.add(new ArrayList<Event>());
+		}
+		this.graph = new IntGraph();
+		this.candidatesByDate = new ArrayList<BitSet>(horizon + 1);
+		for (int date = 0; date <= horizon; date++) {
+			candidatesByDate.add(new BitSet());
+		}
 	}
 	
 	/**
 	 * Adds an event to the list of events or returns false if the details for the event are not valid.
 	 * This maintains the event list in sorted order (sort is ascending by name only).
-	 * 
-	 * Tip: Collections.sort can be used after a new event is added.
+	 * The new event is inserted at its sorted position, so the list is never re-sorted.
 	 * 
 	 * The following conditions result in no event being added and false being returned
 	 * <ul>
 	 * <li>name is null or an empty string "".</li>
-	 * <li>date is not an integer in range 1 to 30, inclusive.</li>
+	 * <li>date is not an integer in range 1 to the horizon (30 by default), inclusive.</li>
 	 * <li>the event name already exists (duplicate event names are not allowed)</li>
 	 * <li>the volunteer limit is less than one</li>
 	 * </ul>
@@ -72,11 +150,24 @@ public class EventManager {
 	public boolean addEvent(String name, String dateStr, String limitStr){
 		int eventDate = Integer.parseInt(dateStr);		//Integer value of the date of the event.
 		int maxVolunteers = Integer.parseInt(limitStr); //Integer value of the max number of volunteers for this event.
-				
-		if (!(findEvent(name) == null) || name == null || name.isEmpty()) {
+		
+		return addEvent(name, eventDate, maxVolunteers);
+	}
+	
+	/**
+	 * Adds an event whose date and limit have already been parsed.
+	 * The same conditions as addEvent(String, String, String) apply.
+	 * 
+	 * @param name the name of a new event
+	 * @param eventDate the date of this event
+	 * @param maxVolunteers the volunteers limit in this event
+	 * @return true if the event was valid and added successfully, otherwise false
+	 */
+	public boolean addEvent(String name, int eventDate, int maxVolunteers){
+		if (name == null || name.isEmpty() || !(lookupEvent(name) == null)) {
 			return false;	//If duplicate name, empty name, or null name, then return false.
 		}
-		if (!(1 <= eventDate) || !(eventDate <= 30)) {
+		if (!(1 <= eventDate) || !(eventDate <= horizon)) {
 			return false;	//If the event date is out of valid range, then return false.
 		}
 		if (maxVolunteers < 1) {
@@ -84,18 +175,15 @@ public class EventManager {
 		}
 		
 		//**If valid event, then we add it to sorted list.**
-		Event newEvent = new Event(name, eventDate, maxVolunteers);
-		eventList.add(newEvent); 
-		Collections.sort(eventList);
+		insertEvent(new Event(name, eventDate, maxVolunteers, horizon));
 
 		return true;	//Return true after adding in the event list.
 	}
 		
 	/**
 	 * Adds a new volunteer to the list of volunteers or returns false.
-	 * Maintains the volunteer list in sorted order.  
-	 * 
-	 * Tip: Collections.sort can be used after a new volunteer is added.
+	 * Maintains the volunteer list in sorted order by inserting the new
+	 * volunteer at its sorted position.
 	 * 
 	 * The following conditions result in no volunteer being added and false being returned.
 	 * <ul>
@@ -108,47 +196,78 @@ public class EventManager {
 	 * @return true if volunteer was successfully added to volunteer list. Else, return false.
 	 */
 	public boolean addVolunteer(String name, String[] availableDatesStrAry){		
-		int date = 0;		//The separate integer values we got from file, put into availableDatesStrAry.
-		ArrayList<Integer> intDates = new ArrayList<Integer>(0);  //The list of integers dates derived from String array.
-	
-		if (!(findVolunteer(name) == null) || name == null || name.isEmpty()) {
-			return false;	//If duplicate name, empty name, or null name, then return false.
-		}
+		int[] dates = new int[availableDatesStrAry.length]; //The dates we got from file, as integers.
+		int dateCount = 0;
+		
 		if (availableDatesStrAry.length != 0) { 	   //Helps for when dates are empty in file lines of volunteer.
 			if (!availableDatesStrAry[0].equals("")) { //If array of dates is available for volunteer.
 				/*
-				 * Getting volunteer dates and putting them into an arrayList.
-				 * For each string number, make into integer, add as date to intDates list.
+				 * For each string number, make into integer, add as date to the dates array.
 				 */
 				for (String str : availableDatesStrAry) { 
 					try {
-						date = Integer.parseInt(str.trim()); //Removing trailing/leading whitespace to avoid NumFormatExeception
+						dates[dateCount++] = Integer.parseInt(str.trim()); //Removing trailing/leading whitespace to avoid NumFormatExeception
 					} catch (NumberFormatException e) {
 						return false;      //If user tries entering in anything other than integers for dates of volunteer.
 					}
-					intDates.add(date); 		  
 				}		
-				//**Return false if there are any invalid date values (not in 1 -> 30 range), or duplicate dates.**
-				for (int i = 0; i < intDates.size(); i++) {
-					if (!(1 <= intDates.get(i)) || !(intDates.get(i) <= 30)) {
-						return false;		//Return false for invalid dates.
-					}
-					for (int j = i + 1; j < intDates.size(); j++) { 
-						if (intDates.get(i) == intDates.get(j)) {
-							return false;	//Return false for duplicate dates.
-						}
-					}
-				}
 			}
 		}
+		return addVolunteer(name, dates, dateCount);
+	}
+	
+	/**
+	 * Adds a volunteer whose available dates have already been parsed.
+	 * Returns false if the name is null, empty or a duplicate, or if a
+	 * date is out of the 1 to horizon range or listed twice.
+	 * 
+	 * @param name the name of a new volunteer
+	 * @param dates array holding the available dates
+	 * @param dateCount how many entries of dates are used
+	 * @return true if volunteer was successfully added to volunteer list. Else, return false.
+	 */
+	boolean addVolunteer(String name, int[] dates, int dateCount){
+		if (name == null || name.isEmpty() || !(lookupVolunteer(name) == null)) {
+			return false;	//If duplicate name, empty name, or null name, then return false.
+		}
+		if (!areValidDates(dates, dateCount)) {
+			return false;	//Return false for invalid or duplicate dates.
+		}
+		
 		//**If valid volunteer (even if no available dates), then we add it to sorted list.**
-		Volunteer newVolunteer = new Volunteer(name, intDates);
-		volunteerList.add(newVolunteer); 
-		Collections.sort(volunteerList);
+		Volunteer newVolunteer = new Volunteer(name, Collections.<Integer>emptyList(), horizon);
+		for (int i = 0; i < dateCount; i++) {
+			newVolunteer.setAvailable(dates[i]);
+		}
+		insertVolunteer(newVolunteer);
 		
 		return true;	//Return true after adding in the volunteer.
 	}
 	
+	/**
+	 * Checks a list of volunteer dates without touching the manager's state,
+	 * so it is safe to call from several threads.
+	 * 
+	 * @param dates array holding the dates
+	 * @param dateCount how many entries of dates are used
+	 * @return false if any date is not in the 1 to horizon range or is listed twice
+	 */
+	boolean areValidDates(int[] dates, int dateCount) {
+		if (dateCount == 0) {
+			return true;
+		}
+		AvailabilityCalendar seenDates = new AvailabilityCalendar(horizon);	//The dates checked so far.
+		for (int i = 0; i < dateCount; i++) {
+			if (!(1 <= dates[i]) || !(dates[i] <= horizon)) {
+				return false;		//Return false for invalid dates.
+			}
+			if (!seenDates.add(dates[i])) {
+				return false;		//Return false for duplicate dates.
+			}
+		}
+		return true;
+	}
+	
 	/** 
 	 * USED ONLY IF AN EVENT NEEDS TO BE REMOVED WHILE READ FROM FILE
 	 * 
@@ -159,21 +278,38 @@ public class EventManager {
 	 * @return true if the event existed and removed successfully, otherwise false
 	 */
 	public boolean removeEvent(String name) {
-		for (Event certainEvent : eventList) {
-			if (certainEvent.getName().equalsIgnoreCase(name)) {
-				eventList.remove(certainEvent);	//Removing a selected event from eventList if it exists.
-				/*
-				 * Removing all event-volunteer matches corresponding to removed event.
-				 * Do not want volunteers to still be matched to a non-existent event.
-				 */
-				for (GraphNode volunteer : certainEvent.getAdjacentNodes()) {
-					String volunteerName = volunteer.getName(); 		//Name of a matched volunteer to certainEvent.
-					removeMatch(certainEvent.getName(), volunteerName); //Removing the relationship.
-				}
-				return true;		//Return true after a certain event was successfully removed from the list. 
+		if (name == null) {
+			return false;
+		}
+		Event certainEvent = eventIndex.remove(GraphNode.foldName(name)); //The event to be removed, if it exists.
+		if (certainEvent == null) {
+			return false;			//If an event was never found in eventList, then return false.
+		}
+		GraphNode.removeSorted(eventList, certainEvent);	//Removing a selected event from eventList.
+		GraphNode.removeSorted(eventsByDate.get(certainEvent.getDate()), certainEvent);
+		/*
+		 * Removing all event-volunteer matches corresponding to removed event.
+		 * Do not want volunteers to still be matched to a non-existent event.
+		 */
+		int id = certainEvent.id;
+		Volunteer[] freed = new Volunteer[graph.eventDegree(id)];	//Volunteers that lose their match.
+		for (int i = 0; i < freed.length; i++) {
+			freed[i] = graph.volunteer(graph.eventEdge(id, i));
+			if (freed[i].isAvailable(certainEvent.getDate())) {
+				setCandidate(certainEvent.getDate(), freed[i], true);	//Volunteer is free on that date again.
 			}
 		}
-		return false;				//If an event was never found in eventList, then return false.
+		graph.removeEvent(id);		//Removes the matches on both sides.
+		WriteAheadLog l = log;
+		if (l != null) {
+			l.removeEvent(certainEvent);
+		}
+		if (autoRematch) {
+			for (Volunteer vol : freed) {
+				placeVolunteer(vol, certainEvent.getDate());
+			}
+		}
+		return true;				//Return true after a certain event was successfully removed from the list. 
 	}
 	
 	/**
@@ -184,51 +320,99 @@ public class EventManager {
 	 * @return true if volunteer existed and removed successfully, otherwise false
 	 */
 	public boolean removeVolunteer(String name){
-		for (Volunteer certainVolunteer : volunteerList) {
-			if (certainVolunteer.getName().equalsIgnoreCase(name)) {
-				volunteerList.remove(certainVolunteer);	//Removing a selected volunteer from volunteerList if it exists.
-				/*
-				 * Removing all event-volunteer matches corresponding to removed volunteer.
-				 * Do not want events to still be matched to a non-existent volunteer.
-				 */
-				for (GraphNode event : certainVolunteer.getAdjacentNodes()) {
-					String eventName = event.getName(); 			    //Name of a matched event to certainVolunteer.
-					removeMatch(eventName, certainVolunteer.getName()); //Removing the relationship.
-				}
-				return true;		//Return true after a certain volunteer was successfully removed from the list. 
+		if (name == null) {
+			return false;
+		}
+		Volunteer certainVolunteer = volunteerIndex.remove(GraphNode.foldName(name)); //The volunteer to be removed.
+		if (certainVolunteer == null) {
+			return false;			//If a volunteer was never found in volunteerList, then return false.
+		}
+		GraphNode.removeSorted(volunteerList, certainVolunteer);	//Removing a selected volunteer from volunteerList.
+		/*
+		 * Removing all event-volunteer matches corresponding to removed volunteer.
+		 * Do not want events to still be matched to a non-existent volunteer.
+		 */
+		int id = certainVolunteer.id;
+		Event[] freed = new Event[graph.volunteerDegree(id)];	//Events that lose a volunteer.
+		for (int i = 0; i < freed.length; i++) {
+			freed[i] = graph.event(graph.volunteerEdge(id, i));
+		}
+		for (int date = certainVolunteer.nextAvailableDate(1); date != -1; date = certainVolunteer.nextAvailableDate(date + 1)) {
+			setCandidate(date, certainVolunteer, false);
+		}
+		graph.removeVolunteer(id);	//Removes the matches on both sides.
+		WriteAheadLog l = log;
+		if (l != null) {
+			l.removeVolunteer(certainVolunteer);
+		}
+		if (autoRematch) {
+			for (Event event : freed) {
+				fillEvent(event);
 			}
 		}
-		return false;				//If a volunteer was never found in volunteerList, then return false.
+		return true;				//Return true after a certain volunteer was successfully removed from the list. 
 	}
 	
 	/**
 	 * Given the event name, check if the event exists in the event list. 
+	 * The lookup is case-insensitive and goes through the name index.
 	 * 
 	 * @param name the name of the event to be found
 	 * @return event if the event exists, otherwise null.
 	 */
 	public Event findEvent(String name){
-		for (Event anEvent : eventList) {
-			if (anEvent.getName().equalsIgnoreCase(name)) {
-				return anEvent;
-			}
+		ManagerMetrics m = metrics;
+		if (m == null) {
+			return lookupEvent(name);
 		}
-		return null;
+		long start = System.nanoTime();
+		Event event = lookupEvent(name);
+		m.record(ManagerMetrics.Operation.FIND_EVENT, event != null, start);
+		return event;
+	}
+	
+	/**
+	 * Looks up an event like findEvent without recording it in the metrics.
+	 * 
+	 * @param name the name of the event to be found
+	 * @return event if the event exists, otherwise null.
+	 */
+	Event lookupEvent(String name){
+		if (name == null) {
+			return null;
+		}
+		return eventIndex.get(GraphNode.foldName(name));
 	}
 	
 	/**
 	 * Return the volunteer with the given name.
+	 * The lookup is case-insensitive and goes through the name index.
 	 * 
 	 * @param name the name of the volunteer
 	 * @return volunteer if the volunteer exists, otherwise null.
 	 */
 	public Volunteer findVolunteer(String name){
-		for (Volunteer aVolunteer: volunteerList) {
-			if (aVolunteer.getName().equalsIgnoreCase(name)) {
-				return aVolunteer;
-			}
+		ManagerMetrics m = metrics;
+		if (m == null) {
+			return lookupVolunteer(name);
 		}
-		return null;
+		long start = System.nanoTime();
+		Volunteer vol = lookupVolunteer(name);
+		m.record(ManagerMetrics.Operation.FIND_VOLUNTEER, vol != null, start);
+		return vol;
+	}
+	
+	/**
+	 * Looks up a volunteer like findVolunteer without recording it in the metrics.
+	 * 
+	 * @param name the name of the volunteer
+	 * @return volunteer if the volunteer exists, otherwise null.
+	 */
+	Volunteer lookupVolunteer(String name){
+		if (name == null) {
+			return null;
+		}
+		return volunteerIndex.get(GraphNode.foldName(name));
 	}
 	
 	/**
@@ -251,14 +435,33 @@ public class EventManager {
 	 * @return true if the match is created, otherwise false.
 	 */
 	public boolean createMatch(String eventName, String volunteerName){
+		ManagerMetrics m = metrics;
+		if (m == null) {
+			return createMatchByName(eventName, volunteerName);
+		}
+		long start = System.nanoTime();
+		boolean created = createMatchByName(eventName, volunteerName);
+		m.record(ManagerMetrics.Operation.CREATE_MATCH, created, start);
+		return created;
+	}
+	
+	/**
+	 * Does the work of createMatch(String, String), which adds the timing.
+	 * 
+	 * @param eventName the name of an event to be matched to a volunteer
+	 * @param volunteerName the name of a volunteer to be matched to a event
+	 * @return true if the match is created, otherwise false.
+	 */
+	boolean createMatchByName(String eventName, String volunteerName){
 		Volunteer potentialVol; //The potential volunteer, created from volunteerName, for certain event.
 		Event matchedEvent;	    //The event that this potential volunteer can be matched to.
 		/*
 		 * If eventName found in list of events, make a GraphNode from it to match it to volunteer,
 		 * else return false.  
 		 */
-		matchedEvent = findEvent(eventName); 
+		matchedEvent = lookupEvent(eventName); 
 		if (matchedEvent == null) {
+			reject(ManagerMetrics.Operation.CREATE_MATCH, ManagerMetrics.Rejection.UNKNOWN_NAME);
 			return false;	
 		}
 		
@@ -266,37 +469,123 @@ public class EventManager {
 		 * If volunteerName found in list of volunteers, make a GraphNode from it to match it to volunteer,
 		 * else return false.  
 		 */
-		potentialVol = findVolunteer(volunteerName);
+		potentialVol = lookupVolunteer(volunteerName);
 		if (potentialVol == null) {
+			reject(ManagerMetrics.Operation.CREATE_MATCH, ManagerMetrics.Rejection.UNKNOWN_NAME);
 			return false;
 		}
 		
+		return createMatch(matchedEvent, potentialVol);
+	}
+	
+	/**
+	 * Creates a match between an event and a volunteer that have already
+	 * been looked up, applying the same checks as createMatch(String, String).
+	 * 
+	 * @param matchedEvent the event to be matched
+	 * @param potentialVol the volunteer to be matched
+	 * @return true if the match is created, otherwise false.
+	 */
+	boolean createMatch(Event matchedEvent, Volunteer potentialVol){
 		//**If Volunteer isn't available on the date of the event, no match made.**
 		if (!potentialVol.isAvailable(matchedEvent.getDate())) {
+			reject(ManagerMetrics.Operation.CREATE_MATCH, ManagerMetrics.Rejection.UNAVAILABLE);
 			return false;
 		}
 		
-		//**If volunteer has been matched to any other event on the same date, no match made.**
-		for (Event otherEvent : eventList) {
-			if (!otherEvent.getName().equalsIgnoreCase(eventName)) {  
-				if (matchedEvent.getDate() == otherEvent.getDate()) {
-					if (potentialVol.hasEvent(otherEvent.getName())) {
-						return false;
-					}
-				}		
-			}
+		//**If volunteer has been matched to any event on the same date (this one included), no match made.**
+		if (potentialVol.isBookedOn(matchedEvent.getDate())) {
+			reject(ManagerMetrics.Operation.CREATE_MATCH, ManagerMetrics.Rejection.SAME_DATE_CONFLICT);
+			return false;
 		}
 		
 		//**If all test conditions passed, then create a match if volunteer is below limit.**
-		if (matchedEvent.isBelowLimit()) { 
-			matchedEvent.addAdjacentNode(potentialVol);
-			potentialVol.addAdjacentNode(matchedEvent); 
+		if (graph.hasRoom(matchedEvent.id)) { 
+			link(matchedEvent, potentialVol);
 			return true; //Return true after match has been created.
 		}
 		
+		reject(ManagerMetrics.Operation.CREATE_MATCH, ManagerMetrics.Rejection.OVER_LIMIT);
 		return false; 	 //If event is over limit of volunteers, return false.
 	}
 	
+	/**
+	 * Creates a batch of matches, all or nothing. Pair i matches
+	 * eventNames[i] with volunteerNames[i].
+	 *
+	 * Every name is looked up once (repeated event names next to each other
+	 * are looked up only once) and the whole batch is checked before
+	 * anything changes:
+	 * <ul>
+	 * <li>every pair must pass the checks of createMatch,</li>
+	 * <li>no volunteer may get two events on the same date within the batch,</li>
+	 * <li>no event may go over its limit once the whole batch is added.</li>
+	 * </ul>
+	 * If any pair fails, no match is created.
+	 *
+	 * @param eventNames the names of the events to be matched
+	 * @param volunteerNames the names of the volunteers to be matched, one per event name
+	 * @return true if every match was created, false if none was
+	 * @throws IllegalArgumentException if the arrays differ in length
+	 */
+	public boolean createMatches(String[] eventNames, String[] volunteerNames){
+		if (eventNames.length != volunteerNames.length) {
+			throw new IllegalArgumentException();
+		}
+		Event[] events = new Event[eventNames.length];			//The events of the batch, looked up.
+		Volunteer[] volunteers = new Volunteer[volunteerNames.length];	//The volunteers of the batch, looked up.
+		for (int i = 0; i < eventNames.length; i++) {
+			if (i > 0 && eventNames[i] != null && eventNames[i].equals(eventNames[i - 1])) {
+				events[i] = events[i - 1];		//Rosters usually list one event many times in a row.
+			}
+			else {
+				events[i] = lookupEvent(eventNames[i]);
+			}
+			volunteers[i] = lookupVolunteer(volunteerNames[i]);
+			if (events[i] == null || volunteers[i] == null) {
+				return false;	//Unknown name, nothing has been changed yet.
+			}
+		}
+		return createMatches(events, volunteers);
+	}
+
+	/**
+	 * Creates a batch of matches between events and volunteers that have
+	 * already been looked up, all or nothing, with the checks of
+	 * createMatches(String[], String[]).
+	 *
+	 * @param events the events to be matched
+	 * @param volunteers the volunteers to be matched, one per event
+	 * @return true if every match was created, false if none was
+	 */
+	boolean createMatches(Event[] events, Volunteer[] volunteers){
+		Set<Long> batchBookings = new HashSet<Long>();	//Volunteer id and date of each match in this batch.
+		Map<Event, Integer> batchMatches = new HashMap<Event, Integer>();		//Matches each event will have after this batch.
+		for (int i = 0; i < events.length; i++) {
+			Event event = events[i];
+			Volunteer vol = volunteers[i];
+			int date = event.getDate();
+			if (!vol.isAvailable(date) || vol.isBookedOn(date)) {
+				return false;	//Same checks as createMatch.
+			}
+			if (!batchBookings.add(((long) vol.id << 32) | date)) {
+				return false;	//Volunteer gets two events on this date within the batch.
+			}
+			Integer matches = batchMatches.get(event);
+			int matchesAfter = ((matches == null) ? graph.eventDegree(event.id) : matches) + 1;
+			if (matchesAfter > event.getLimit()) {
+				return false;	//Batch takes the event over its limit.
+			}
+			batchMatches.put(event, matchesAfter);
+		}
+
+		//**Whole batch checked, now apply it.**
+		for (int i = 0; i < events.length; i++) {
+			link(events[i], volunteers[i]);
+		}
+		return true;
+	}
+
 	/**
 	 * Given the event and volunteer, remove the match between them if it exists.
 	 * Return true if the match is found and removed.
@@ -315,27 +604,720 @@ public class EventManager {
 	 * @return true if the match existed and removed successfully, otherwise false.
 	 */
 	public boolean removeMatch(String eventName, String volunteerName){
-		Event event = findEvent(eventName);					//The event GraphNode returned from eventName.
-		Volunteer volunteer = findVolunteer(volunteerName);	//The volunteer GraphNode returned from volunteerName.
+		ManagerMetrics m = metrics;
+		if (m == null) {
+			return removeMatchByName(eventName, volunteerName);
+		}
+		long start = System.nanoTime();
+		boolean removed = removeMatchByName(eventName, volunteerName);
+		m.record(ManagerMetrics.Operation.REMOVE_MATCH, removed, start);
+		return removed;
+	}
+	
+	/**
+	 * Does the work of removeMatch(String, String), which adds the timing.
+	 * 
+	 * @param eventName the name of an event to be removed from match
+	 * @param volunteerName the name of a volunteer to be removed from match
+	 * @return true if the match existed and removed successfully, otherwise false.
+	 */
+	boolean removeMatchByName(String eventName, String volunteerName){
+		Event event = lookupEvent(eventName);					//The event GraphNode returned from eventName.
+		Volunteer volunteer = lookupVolunteer(volunteerName);	//The volunteer GraphNode returned from volunteerName.
 		
 		//**Because our graph is undirected, we have to removed both corresponding matches between volunteer & event.**
 		if (event == null || volunteer == null) {
+			reject(ManagerMetrics.Operation.REMOVE_MATCH, ManagerMetrics.Rejection.UNKNOWN_NAME);
 			return false; //If either the event or the volunteer do not exist, return false.
 		}
+		return removeMatch(event, volunteer);
+	}
+	
+	/**
+	 * Removes the match between an event and a volunteer that have
+	 * already been looked up.
+	 * 
+	 * @param event the matched event
+	 * @param volunteer the matched volunteer
+	 * @return true if the match existed and removed successfully, otherwise false.
+	 */
+	boolean removeMatch(Event event, Volunteer volunteer){
 		//**Checking for adjacency between the 2 nodes before removal.**
-		if (event.isAdjacentNode(volunteerName)) {
-			event.removeAdjacentNode(volunteer);
-			volunteer.removeAdjacentNode(event);
+		if (unlink(event, volunteer)) {
 			volunteer.isAvailable(event.getDate()); //Volunteer is now free on that day that it used to have the event.
-			System.out.println("Removed match yayyy-in EVM()");
 			return true;
 		}	
 		else {
-			System.out.println("Couldn't remove match- in EVM()");
+			reject(ManagerMetrics.Operation.REMOVE_MATCH, ManagerMetrics.Rejection.NOT_MATCHED);
 			return false;	//Return false if not adjacent to each other.
 		}
 	}
 	
+	/**
+	 * Automatically matches volunteers to events so that as many event
+	 * slots as possible are filled. Existing matches are kept.
+	 * 
+	 * The same rules as createMatch apply: an event never goes over its
+	 * limit, a volunteer is only matched on dates they are available, and
+	 * a volunteer is matched to at most one event per date.
+	 * 
+	 * Because of the one-event-per-date rule the problem splits into one
+	 * bipartite matching per date, and within a date every available
+	 * volunteer can serve every event. That subgraph is complete, so any
+	 * assignment that cannot be extended is already a maximum one
+	 * (min of free volunteers and open slots). Filling the open slots of
+	 * each date greedily therefore gives a maximum matching in
+	 * O(dates * volunteers + events) time without building the edges.
+	 * 
+	 * Volunteers and events are taken in name order so the result is
+	 * deterministic.
+	 * 
+	 * @return the number of matches that were created
+	 */
+	public int autoMatch(){
+		int created = 0;	//Number of matches made so far.
+		for (int date = 1; date <= horizon; date++) {
+			List<Event> dateEvents = eventsByDate.get(date);
+			int next = 0;	//Index of the event currently being filled.
+			for (Volunteer vol : volunteerList) {
+				while (next < dateEvents.size() && !graph.hasRoom(dateEvents.get(next).id)) {
+					next++;		//Skipping events that are already full.
+				}
+				if (next == dateEvents.size()) {
+					break;		//Every slot on this date is taken.
+				}
+				if (!vol.isAvailable(date) || vol.isBookedOn(date)) {
+					continue;	//Volunteer can't take an event on this date.
+				}
+				link(dateEvents.get(next), vol);
+				created++;
+			}
+		}
+		return created;
+	}
+
+	/**
+	 * Automatically matches volunteers to events like autoMatch(), creating
+	 * the same number of matches, but chooses among the possible matchings
+	 * the one with the highest total score. Existing matches are kept and
+	 * are not scored.
+	 *
+	 * Each date is solved on its own as a min-cost max-flow problem (see
+	 * MinCostAssignment) over the events of that date with room left and
+	 * the volunteers available and still free on it. The scorer is called
+	 * once for every such pair.
+	 *
+	 * Only the best k volunteers of each event are passed to the solver,
+	 * where k is the smaller of the number of free volunteers and the number
+	 * of free slots on the date. That loses nothing: if a volunteer outside
+	 * an event's best k held one of its slots, one of its best k would be
+	 * free (at most k - 1 others are matched), and could take the slot for
+	 * at least the same score. Each event's best k are picked in a scratch
+	 * heap of k entries, and the candidate arrays grow as they are appended,
+	 * so memory follows the candidates actually passed, never events times
+	 * volunteers.
+	 *
+	 * @param scorer gives the score of each candidate match, higher is better
+	 * @return the number of matches that were created
+	 * @throws IllegalArgumentException if a score is outside +-MinCostAssignment.MAX_COST;
+	 * matches made on earlier dates are kept
+	 */
+	public int autoMatch(MatchScorer scorer){
+		int created = 0;	//Number of matches made so far.
+		for (int date = 1; date <= horizon; date++) {
+			List<Event> openEvents = new ArrayList<Event>();	//Events on this date with room left.
+			for (Event event : eventsByDate.get(date)) {
+				if (graph.hasRoom(event.id)) {
+					openEvents.add(event);
+				}
+			}
+			if (openEvents.isEmpty()) {
+				continue;
+			}
+			List<Volunteer> freeVolunteers = candidatesOn(date);	//Volunteers that could take one of them.
+			if (freeVolunteers.isEmpty()) {
+				continue;
+			}
+
+			int eventCount = openEvents.size();
+			int volunteerCount = freeVolunteers.size();
+			int[] room = new int[eventCount];
+			long slots = 0;		//Free slots of all open events on this date.
+			for (int e = 0; e < eventCount; e++) {
+				Event event = openEvents.get(e);
+				room[e] = event.getLimit() - graph.eventDegree(event.id);
+				slots += room[e];
+			}
+			//Some best matching only uses each event's best `keep` volunteers, so only those are kept.
+			int keep = (int) Math.min(volunteerCount, slots);
+			int[] bestVolunteer = new int[keep];	//Scratch heap of the event being scored.
+			long[] bestCost = new long[keep];
+			int[] edgeStart = new int[eventCount + 1];
+			int[] edgeVolunteer = new int[keep];
+			long[] edgeCost = new long[keep];
+			int edges = 0;
+			for (int e = 0; e < eventCount; e++) {
+				Event event = openEvents.get(e);
+				int kept = 0;
+				for (int v = 0; v < volunteerCount; v++) {
+					long score = scorer.score(event, freeVolunteers.get(v));
+					if (score < -MinCostAssignment.MAX_COST || score > MinCostAssignment.MAX_COST) {
+						throw new IllegalArgumentException("score out of range: " + score);
+					}
+					keepCheapest(bestVolunteer, bestCost, 0, kept, keep, v, -score);
+					kept = Math.min(kept + 1, keep);
+				}
+				long needed = (long) edges + kept;
+				if (needed > edgeVolunteer.length) {
+					if (needed > MAX_ARRAY_LENGTH) {
+						throw new IllegalStateException("too many candidate matches on date " + date);
+					}
+					int capacity = (int) Math.min(MAX_ARRAY_LENGTH, Math.max(2L * edgeVolunteer.length, needed));
+					edgeVolunteer = Arrays.copyOf(edgeVolunteer, capacity);
+					edgeCost = Arrays.copyOf(edgeCost, capacity);
+				}
+				System.arraycopy(bestVolunteer, 0, edgeVolunteer, edges, kept);
+				System.arraycopy(bestCost, 0, edgeCost, edges, kept);
+				edges += kept;
+				edgeStart[e + 1] = edges;
+			}
+			MinCostAssignment assignment = new MinCostAssignment(volunteerCount, room, edgeStart, edgeVolunteer, edgeCost);
+			assignment.solve();
+			for (int v = 0; v < volunteerCount; v++) {
+				int e = assignment.assignedEvent(v);
+				if (e != -1) {
+					link(openEvents.get(e), freeVolunteers.get(v));
+					created++;
+				}
+			}
+		}
+		return created;
+	}
+
+	/**
+	 * Adds a volunteer to the candidates kept for one event if it is among
+	 * the cheapest so far. The kept candidates are a max-heap by cost at
+	 * volunteer[base ..] and cost[base ..], the costliest at the root.
+	 * Volunteers come in index order, so a later one only displaces a
+	 * strictly costlier one, and ties keep the lower index.
+	 * 
+	 * @param size number of candidates kept so far
+	 * @param keep the most candidates to keep
+	 */
+	private static void keepCheapest(int[] volunteer, long[] cost, int base, int size, int keep, int v, long c) {
+		int i;
+		if (size < keep) {
+			i = size;		//Room left: sift the new entry up from the end.
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (cost[base + parent] > c) {
+					break;	//On equal costs the new entry, with the higher index, ranks after the parent.
+				}
+				volunteer[base + i] = volunteer[base + parent];
+				cost[base + i] = cost[base + parent];
+				i = parent;
+			}
+		}
+		else {
+			if (c >= cost[base]) {
+				return;		//No cheaper than the costliest one kept.
+			}
+			i = 0;			//Replace the root and sift the new entry down.
+			for (;;) {
+				int child = 2 * i + 1;
+				if (child >= keep) {
+					break;
+				}
+				if (child + 1 < keep && costlier(volunteer, cost, base + child + 1, base + child)) {
+					child++;
+				}
+				if (cost[base + child] <= c) {
+					break;
+				}
+				volunteer[base + i] = volunteer[base + child];
+				cost[base + i] = cost[base + child];
+				i = child;
+			}
+		}
+		volunteer[base + i] = v;
+		cost[base + i] = c;
+	}
+	
+	/**
+	 * @return true if the candidate at index a ranks after the one at index b
+	 */
+	private static boolean costlier(int[] volunteer, long[] cost, int a, int b) {
+		return cost[a] > cost[b] || (cost[a] == cost[b] && volunteer[a] > volunteer[b]);
+	}
+	
+	/**
+	 * Turns incremental re-matching on or off. It is off by default.
+	 * 
+	 * When it is on, changes that free up a slot or a volunteer fill it
+	 * again right away, without re-running autoMatch over every date:
+	 * <ul>
+	 * <li>removeVolunteer fills the slots the volunteer held,</li>
+	 * <li>removeEvent places each of its volunteers on another event of the same date,</li>
+	 * <li>setVolunteerAvailable places the volunteer on an event of that date,</li>
+	 * <li>setVolunteerUnavailable fills the slot the volunteer gives up on that date.</li>
+	 * </ul>
+	 * Within one date any free volunteer can take any open slot, so the
+	 * only augmenting paths are single edges from the affected node, and
+	 * these steps keep a maximum matching (e.g. one made by autoMatch)
+	 * maximum. Slots are filled with volunteers in name order, as autoMatch
+	 * does. Removing a single match with removeMatch never refills it.
+	 * 
+	 * @param enabled true to refill freed slots automatically
+	 */
+	public void setAutoRematch(boolean enabled) {
+		this.autoRematch = enabled;
+	}
+	
+	/**
+	 * @return true if incremental re-matching is on
+	 */
+	public boolean isAutoRematch() {
+		return autoRematch;
+	}
+	
+	/**
+	 * Turns metrics on by attaching where to record them, or off with null.
+	 * While off, operations do no timing or counting and allocate nothing.
+	 * 
+	 * @param metrics the metrics to record createMatch, removeMatch, findEvent,
+	 * findVolunteer, file loads and saves into, or null
+	 */
+	public void setMetrics(ManagerMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return the metrics being recorded, or null if metrics are off
+	 */
+	public ManagerMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Attaches the write-ahead log that every change is appended to, or
+	 * detaches it with null. Called by WriteAheadLog.open and close.
+	 * Once writing the log has failed, every change throws an
+	 * UncheckedIOException after it is made.
+	 */
+	void setLog(WriteAheadLog log) {
+		this.log = log;
+	}
+	
+	/**
+	 * @return the attached write-ahead log, or null
+	 */
+	WriteAheadLog getLog() {
+		return log;
+	}
+	
+	/**
+	 * Records why an operation failed, if metrics are on.
+	 */
+	void reject(ManagerMetrics.Operation operation, ManagerMetrics.Rejection reason) {
+		ManagerMetrics m = metrics;
+		if (m != null) {
+			m.reject(operation, reason);
+		}
+	}
+	
+	/**
+	 * Marks the volunteer as available on the given date. With auto-rematch
+	 * on, the volunteer is then matched to an event of that date that has
+	 * room, if there is one.
+	 * 
+	 * @param volunteerName the name of the volunteer
+	 * @param date the date the volunteer becomes available on
+	 * @return true if the volunteer exists, the date is valid and the volunteer
+	 * was not already available on it, otherwise false
+	 */
+	public boolean setVolunteerAvailable(String volunteerName, int date) {
+		Volunteer vol = lookupVolunteer(volunteerName);
+		if (vol == null || !(1 <= date) || !(date <= horizon)) {
+			return false;
+		}
+		if (!vol.setAvailable(date)) {
+			return false;	//Already available, nothing changes.
+		}
+		if (!vol.isBookedOn(date)) {
+			setCandidate(date, vol, true);
+		}
+		WriteAheadLog l = log;
+		if (l != null) {
+			l.availability(vol, date, true);
+		}
+		if (autoRematch) {
+			placeVolunteer(vol, date);
+		}
+		return true;
+	}
+	
+	/**
+	 * Marks the volunteer as unavailable on the given date. If the volunteer
+	 * is matched to an event on that date the match is removed, and with
+	 * auto-rematch on the freed slot is given to another volunteer.
+	 * 
+	 * @param volunteerName the name of the volunteer
+	 * @param date the date the volunteer is no longer available on
+	 * @return true if the volunteer exists, the date is valid and the volunteer
+	 * was available on it, otherwise false
+	 */
+	public boolean setVolunteerUnavailable(String volunteerName, int date) {
+		Volunteer vol = lookupVolunteer(volunteerName);
+		if (vol == null || !(1 <= date) || !(date <= horizon)) {
+			return false;
+		}
+		if (!vol.setUnavailable(date)) {
+			return false;	//Already unavailable, nothing changes.
+		}
+		setCandidate(date, vol, false);
+		Event dropped = null;	//The event the volunteer can no longer attend, if any.
+		if (vol.isBookedOn(date)) {
+			for (int i = 0; i < graph.volunteerDegree(vol.id); i++) {
+				Event event = graph.event(graph.volunteerEdge(vol.id, i));
+				if (event.getDate() == date) {
+					dropped = event;
+					break;
+				}
+			}
+			unlink(dropped, vol);
+		}
+		WriteAheadLog l = log;	//Logged after the unlink, so a replay finds the volunteer free.
+		if (l != null) {
+			l.availability(vol, date, false);
+		}
+		if (dropped != null && autoRematch) {
+			fillEvent(dropped);
+		}
+		return true;
+	}
+	
+	/**
+	 * Fills the open slots of the event with free volunteers available on
+	 * its date, taken in name order.
+	 */
+	private void fillEvent(Event event) {
+		for (Volunteer vol : candidatesOn(event.getDate())) {
+			if (!graph.hasRoom(event.id)) {
+				return;		//Event is full again.
+			}
+			link(event, vol);
+		}
+	}
+	
+	/**
+	 * Matches the volunteer to the first event (by name) on the date that
+	 * has room, if the volunteer is available and free on that date.
+	 */
+	private void placeVolunteer(Volunteer vol, int date) {
+		if (!vol.isAvailable(date) || vol.isBookedOn(date)) {
+			return;
+		}
+		for (Event event : eventsByDate.get(date)) {
+			if (graph.hasRoom(event.id)) {
+				link(event, vol);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Adds the match between the event and the volunteer. The graph stores
+	 * it once, and both nodes' adjacency lists show it.
+	 * The caller is responsible for checking that the match is allowed.
+	 * 
+	 * @param event the event to be matched
+	 * @param vol the volunteer to be matched
+	 */
+	void link(Event event, Volunteer vol) {
+		graph.link(event, vol);
+		setCandidate(event.getDate(), vol, false);
+		WriteAheadLog l = log;
+		if (l != null) {
+			l.match(event, vol, true);
+		}
+	}
+	
+	/**
+	 * Removes the match between the event and the volunteer.
+	 * 
+	 * @param event the matched event
+	 * @param vol the matched volunteer
+	 * @return true if they were matched
+	 */
+	private boolean unlink(Event event, Volunteer vol) {
+		if (!graph.unlink(event, vol)) {
+			return false;
+		}
+		if (vol.isAvailable(event.getDate())) {
+			setCandidate(event.getDate(), vol, true);
+		}
+		WriteAheadLog l = log;
+		if (l != null) {
+			l.match(event, vol, false);
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds a volunteer that is known to be valid and not a duplicate,
+	 * e.g. one read back from a snapshot. No validation is done.
+	 * 
+	 * @param vol the volunteer to add
+	 */
+	void restoreVolunteer(Volunteer vol) {
+		insertVolunteer(vol);
+	}
+	
+	/**
+	 * Adds an event that is known to be valid and not a duplicate,
+	 * e.g. one read back from a snapshot. No validation is done.
+	 * 
+	 * @param event the event to add
+	 */
+	void restoreEvent(Event event) {
+		insertEvent(event);
+	}
+	
+	/**
+	 * Adds the volunteer to the sorted list, the name index and the graph.
+	 */
+	private void insertVolunteer(Volunteer vol) {
+		GraphNode.insertSorted(volunteerList, vol);
+		volunteerIndex.put(GraphNode.foldName(vol.getName()), vol);
+		graph.addVolunteer(vol);
+		for (int date = vol.nextAvailableDate(1); date != -1; date = vol.nextAvailableDate(date + 1)) {
+			if (!vol.isBookedOn(date)) {
+				setCandidate(date, vol, true);
+			}
+		}
+		WriteAheadLog l = log;
+		if (l != null) {
+			l.addVolunteer(vol);
+		}
+	}
+	
+	/**
+	 * Adds the event to the sorted lists, the name index and the graph.
+	 */
+	private void insertEvent(Event event) {
+		GraphNode.insertSorted(eventList, event);
+		GraphNode.insertSorted(eventsByDate.get(event.getDate()), event);
+		eventIndex.put(GraphNode.foldName(event.getName()), event);
+		graph.addEvent(event);
+		WriteAheadLog l = log;
+		if (l != null) {
+			l.addEvent(event);
+		}
+	}
+	
+	/**
+	 * Lists the volunteers that could be matched to the event right now:
+	 * those available on its date and not matched to any event on that
+	 * date. The list comes from the candidate index, not from a scan of
+	 * all volunteers.
+	 * 
+	 * Availability changes must go through setVolunteerAvailable and
+	 * setVolunteerUnavailable for the index to see them.
+	 * 
+	 * @param eventName the name of the event
+	 * @return the candidates sorted by name (empty if the event is full),
+	 * or null if the event does not exist
+	 */
+	public List<Volunteer> listCandidates(String eventName) {
+		Event event = lookupEvent(eventName);
+		if (event == null) {
+			return null;
+		}
+		if (!graph.hasRoom(event.id)) {
+			return new ArrayList<Volunteer>();
+		}
+		return candidatesOn(event.getDate());
+	}
+	
+	/**
+	 * @return the volunteers available and not matched on the date, sorted by name
+	 */
+	private List<Volunteer> candidatesOn(int date) {
+		BitSet bits = candidatesByDate.get(date);
+		List<Volunteer> candidates;
+		synchronized (bits) {
+			candidates = new ArrayList<Volunteer>(bits.cardinality());
+			for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+				candidates.add(graph.volunteer(id));
+			}
+		}
+		Collections.sort(candidates);
+		return candidates;
+	}
+	
+	/**
+	 * Sets or clears the volunteer's bit in the candidate index of the date.
+	 */
+	private void setCandidate(int date, Volunteer vol, boolean candidate) {
+		BitSet bits = candidatesByDate.get(date);
+		synchronized (bits) {
+			bits.set(vol.id, candidate);
+		}
+	}
+	
+	/**
+	 * Copies the volunteers, events and matches into a new EventManager
+	 * that shares no nodes with this one. Matches are read from the event
+	 * side only and linked on both sides of the copy, so the copy is always
+	 * symmetric.
+	 *
+	 * @return a copy of this manager's state
+	 */
+	EventManager copy() {
+		EventManager copy = new EventManager(horizon);
+		Volunteer[] copies = new Volunteer[graph.volunteerIdLimit()];	//Copied volunteers by original id.
+		for (Volunteer vol : volunteerList) {
+			Volunteer volCopy = new Volunteer(vol.getName(), Collections.<Integer>emptyList(), horizon);
+			for (int date = vol.nextAvailableDate(1); date != -1; date = vol.nextAvailableDate(date + 1)) {
+				volCopy.setAvailable(date);
+			}
+			copy.insertVolunteer(volCopy);
+			copies[vol.id] = volCopy;
+		}
+		for (Event event : eventList) {
+			Event eventCopy = new Event(event.getName(), event.getDate(), event.getLimit(), horizon);
+			copy.insertEvent(eventCopy);
+			for (GraphNode vol : event.getAdjacentNodes()) {
+				copy.link(eventCopy, copies[vol.id]);
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * @return the last valid date; dates run from 1 to the horizon
+	 */
+	public int getHorizon() {
+		return horizon;
+	}
+	
+	/**
+	 * @return read-only view of the volunteers, sorted by name
+	 */
+	List<Volunteer> getVolunteers() {
+		return Collections.unmodifiableList(volunteerList);
+	}
+	
+	/**
+	 * @return read-only view of the events, sorted by name
+	 */
+	List<Event> getEvents() {
+		return Collections.unmodifiableList(eventList);
+	}
+	
+	/**
+	 * @param date a date from 1 to the horizon
+	 * @return read-only view of the events on that date, sorted by name
+	 */
+	List<Event> getEventsOn(int date) {
+		return Collections.unmodifiableList(eventsByDate.get(date));
+	}
+	
+	/**
+	 * Returns one page of the events that pass the query's filters, sorted
+	 * by name. The page is read from the sorted lists and the walk stops as
+	 * soon as it is full, so nothing else is copied or formatted.
+	 * 
+	 * A narrow date range is served from the per-date lists, merged by name,
+	 * so events on other dates are never looked at.
+	 * 
+	 * @param query the filters, page size and cursor
+	 * @return the page; its nodes are the live events, like findEvent returns
+	 */
+	public NodeQuery.Page<Event> queryEvents(NodeQuery query) {
+		int from = Math.max(1, query.getFromDate());
+		int to = Math.min(horizon, query.getToDate());
+		if (from > to) {
+			return query.page(Collections.<Event>emptyIterator(), null);
+		}
+		Iterator<Event> events;
+		if (to - from < QUERY_MERGE_MAX_DATES && !(from == 1 && to == horizon)) {
+			events = query.merge(eventsByDate.subList(from, to + 1));
+		}
+		else {
+			events = query.scan(eventList);
+		}
+		final int first = from, last = to;
+		final boolean belowLimit = query.isBelowLimit(), unmatched = query.isUnmatched();
+		return query.page(events, event ->
+				first <= event.getDate() && event.getDate() <= last
+				&& (!belowLimit || graph.hasRoom(event.id))
+				&& (!unmatched || graph.eventDegree(event.id) == 0));
+	}
+	
+	/**
+	 * Returns one page of the volunteers that pass the query's filters,
+	 * sorted by name, read from the sorted list like queryEvents.
+	 * 
+	 * @param query the filters, page size and cursor
+	 * @return the page; its nodes are the live volunteers, like findVolunteer returns
+	 * @throws IllegalArgumentException if the query is limited to events below their limit
+	 */
+	public NodeQuery.Page<Volunteer> queryVolunteers(NodeQuery query) {
+		if (query.isBelowLimit()) {
+			throw new IllegalArgumentException();
+		}
+		final int from = Math.max(1, query.getFromDate());
+		final int to = Math.min(horizon, query.getToDate());
+		if (from > to) {
+			return query.page(Collections.<Volunteer>emptyIterator(), null);
+		}
+		final boolean anyDate = (from == 1 && to == horizon), unmatched = query.isUnmatched();
+		return query.page(query.scan(volunteerList), vol -> {
+			if (unmatched && graph.volunteerDegree(vol.id) != 0) {
+				return false;
+			}
+			if (anyDate) {
+				return true;
+			}
+			int date = vol.nextAvailableDate(from);
+			return date != -1 && date <= to;
+		});
+	}
+	
+	/**
+	 * Completes a partial event name: returns the names of the first events,
+	 * in name order, whose names start with the prefix, ignoring case the
+	 * same way as findEvent. Works from the sorted event list, so it takes
+	 * a binary search plus one step per name returned.
+	 * 
+	 * @param prefix the start of the name as typed
+	 * @param count the most names to return, at least 1
+	 * @return up to count event names, sorted
+	 */
+	public List<String> completeEventName(String prefix, int count) {
+		return namesOf(queryEvents(new NodeQuery().setNamePrefix(prefix).setPageSize(count)));
+	}
+	
+	/**
+	 * Completes a partial volunteer name like completeEventName.
+	 * 
+	 * @param prefix the start of the name as typed
+	 * @param count the most names to return, at least 1
+	 * @return up to count volunteer names, sorted
+	 */
+	public List<String> completeVolunteerName(String prefix, int count) {
+		return namesOf(queryVolunteers(new NodeQuery().setNamePrefix(prefix).setPageSize(count)));
+	}
+	
+	private static List<String> namesOf(NodeQuery.Page<? extends GraphNode> page) {
+		List<String> names = new ArrayList<String>(page.getNodes().size());
+		for (GraphNode node : page.getNodes()) {
+			names.add(node.getName());
+		}
+		return names;
+	}
+	
 	/**
 	 * This method is used to display all the events along 
 	 * with corresponding matches with the volunteers.
@@ -348,17 +1330,17 @@ public class EventManager {
 	 * Resource.STR_DISPLAY_ALL_EVENTS_PRINT_FORMAT
 	 */
 	public void displayAllEvents(){
+		StringBuilder out = new StringBuilder(DISPLAY_CHUNK_SIZE);	//Reused for every event, printed in large chunks.
 		if (eventList.isEmpty()) {	//If the eventList empty, then there are no events to display- notify this to user. 
-			System.out.println(Resource.STR_ERROR_DISPLAY_EVENT_FAILED);
-			System.out.printf(Resource.STR_DISPLAY_ALL_EVENTS_PRINT_FORMAT, eventList.size());
-		}
-		else {						//Else, there are some events to display, and they are printed accordingly.
-			System.out.printf(Resource.STR_DISPLAY_ALL_EVENTS_PRINT_FORMAT, eventList.size());
-			
-			for (Event eve : eventList) {
-				System.out.print(eve.toString());
-			}
+			out.append(Resource.STR_ERROR_DISPLAY_EVENT_FAILED).append(System.lineSeparator());
 		}
+		out.append(ALL_EVENTS_FORMAT[0]).append(eventList.size()).append(ALL_EVENTS_FORMAT[1]);
+		
+		for (Event eve : eventList) {	//Prints nothing more when there are no events.
+			eve.appendDisplayString(out);
+			printChunk(out, false);
+		}
+		printChunk(out, true);
 	}
 	
 	/**	 
@@ -373,16 +1355,28 @@ public class EventManager {
 	 * Resource.STR_DISPLAY_ALL_VOLUNTEERS_PRINT_FORMAT
 	 */
 	public void displayAllVolunteers(){
+		StringBuilder out = new StringBuilder(DISPLAY_CHUNK_SIZE);	//Reused for every volunteer, printed in large chunks.
 		if (volunteerList.isEmpty())  {//If volunteerList empty, then there are no vols to display- notify this to user.
-			System.out.println(Resource.STR_ERROR_DISPLAY_VOLUNTEER_FAILED);
-			System.out.printf(Resource.STR_DISPLAY_ALL_VOLUNTEERS_PRINT_FORMAT, volunteerList.size());
+			out.append(Resource.STR_ERROR_DISPLAY_VOLUNTEER_FAILED).append(System.lineSeparator());
 		}
-		else {				          //Else, there are volunteers to display, and print them accordingly.
-			System.out.printf(Resource.STR_DISPLAY_ALL_VOLUNTEERS_PRINT_FORMAT, volunteerList.size());
+		out.append(ALL_VOLUNTEERS_FORMAT[0]).append(volunteerList.size()).append(ALL_VOLUNTEERS_FORMAT[1]);
 
-			for (Volunteer vol : volunteerList) {
-				System.out.print(vol.toString());		
-			}
+		for (Volunteer vol : volunteerList) {	//Prints nothing more when there are no volunteers.
+			vol.appendDisplayString(out);
+			printChunk(out, false);
+		}
+		printChunk(out, true);
+	}
+	
+	/**
+	 * Prints and empties the display buffer once it holds a full chunk,
+	 * or whenever it is not empty if last is true. Printing whole chunks
+	 * keeps the number of writes to System.out small.
+	 */
+	private static void printChunk(StringBuilder out, boolean last) {
+		if (out.length() >= DISPLAY_CHUNK_SIZE || (last && out.length() > 0)) {
+			System.out.print(out.toString());
+			out.setLength(0);
 		}
 	}
 	
@@ -408,6 +1402,22 @@ public class EventManager {
 		return fileStringOfVols.toString();
 	}
 	
+	/**
+	 * Writes all the volunteers to the given writer, one line per volunteer,
+	 * in the same format as toStringAllVolunteers. Each volunteer is written
+	 * as soon as it is formatted, so memory use does not grow with the
+	 * number of volunteers.
+	 * 
+	 * @param out the writer to write the volunteers to
+	 * @throws IOException if writing fails
+	 */
+	public void writeAllVolunteers(Writer out) throws IOException {
+		for (Volunteer vol : volunteerList) {
+			out.write(vol.toFileString());
+			out.write('\n');
+		}
+	}
+	
 	/**
 	 * This is helper method to create a string for
 	 * writing all the events in a file.
@@ -427,4 +1437,19 @@ public class EventManager {
 		}
 		return fileStringOfEvents.toString();
 	}
+	
+	/**
+	 * Writes all the events to the given writer, one line per event,
+	 * in the same format as toStringAllEvents, without building the
+	 * whole output in memory first.
+	 * 
+	 * @param out the writer to write the events to
+	 * @throws IOException if writing fails
+	 */
+	public void writeAllEvents(Writer out) throws IOException {
+		for (Event eve : eventList) {
+			out.write(eve.toFileString());
+			out.write('\n');
+		}
+	}
 }
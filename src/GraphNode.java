@@ -5,9 +5,10 @@ import java.util.List;
 /** 
  * GraphNode is the super type of all vertices in p5.
  *  
- * Implements basic get/set for name field, and provides a list of 
- * graphnodes that is used to keep track of the adjacent vertices of 
- * this node.
+ * Implements basic get/set for name field, and provides the list of 
+ * graphnodes that are the adjacent vertices of this node. The adjacent
+ * vertices are not stored in the node: they are read from the IntGraph
+ * of the EventManager holding it, so a node outside a manager has none.
  * 
  * There are two abstract method which must be defined by sub-classes of this type.
  * String toString()     - used to display to standard output
@@ -18,12 +19,11 @@ public abstract class GraphNode implements Comparable<GraphNode> {
 	/** Identifier for this vertex */
 	private String name;
 	
-	/** 
-	 * List of all adjacent nodes from this vertex.
-	 * Events will have volunteers as adjacent vertices (successors)
-	 * Volunteers will have events as adjacent vertices (successors)
-	 */
-	private List<GraphNode> adjacentNodes;
+	/** Id of this vertex in the IntGraph of the EventManager holding it, -1 if none */
+	int id = -1;
+	
+	/** The IntGraph holding this vertex and its matches, null if it is in no EventManager */
+	IntGraph graph;
 	
 	/**
 	 * Construct a new node with the given name.  
@@ -33,20 +33,6 @@ public abstract class GraphNode implements Comparable<GraphNode> {
 	public GraphNode(String name){
 		if(name == null) throw new IllegalArgumentException();
 		this.name = name;
-		this.adjacentNodes = new ArrayList<GraphNode>();
-	}
-
-	/**
-	 * Constructor for the GraphNode given name of the node and adjacentNodes list.
-	 * Throws IllegalArgumentException if either of the arguments are null. 
-	 *
-	 * @throws IllegalArgument Exception if name is null.
-	 * @param name The name or identifier for this node.
-	 */
-	protected GraphNode(String name, List<GraphNode> adjacentNodes){
-		if(name == null || adjacentNodes == null) throw new IllegalArgumentException();
-		this.name = name;
-		this.adjacentNodes = adjacentNodes;
 	}
 	
 	/**
@@ -59,29 +45,75 @@ public abstract class GraphNode implements Comparable<GraphNode> {
 
 	/**
  	 * 
-	 * @return return the adjacent modes of this node (matches)
+	 * @return return the adjacent modes of this node (matches), sorted by name.
+	 * The list is a read-only view that follows later matches.
 	 */
 	protected List<GraphNode> getAdjacentNodes(){
-		return this.adjacentNodes;
+		IntGraph g = graph;
+		if(g == null) return Collections.emptyList();
+		return g.adjacentNodes(this);
 	}
 	
 	/**
 	 * This method is used to add a given node to the adjacentNodes.
-	 * After adding, adjacentNodes should be sorted.
-	 * @param node 
+	 * The match is stored once in the graph, so it also shows up in the
+	 * adjacent nodes of the given node, and both lists stay sorted.
+	 * @param node an event if this is a volunteer, a volunteer if this is an event
+	 * @throws IllegalStateException if the nodes are not in the same EventManager
 	 */
 	public void addAdjacentNode(GraphNode node){
-		adjacentNodes.add(node);
-		Collections.sort(adjacentNodes);
+		IntGraph g = graph;
+		if(g == null || node.graph != g) throw new IllegalStateException("nodes are not in the same EventManager");
+		if(this instanceof Event) g.link((Event) this, (Volunteer) node);
+		else g.link((Event) node, (Volunteer) this);
 	}
 	
 	/**
 	 * This method is used to remove a given node from the adjacentNodes.
 	 * @param node
-	 * @return 
+	 * @return true if the nodes were adjacent and no longer are
 	 */
 	public boolean removeAdjacentNode(GraphNode node){
-		return adjacentNodes.remove(node);
+		IntGraph g = graph;
+		if(g == null || node.graph != g) return false;
+		if(this instanceof Event) return g.unlink((Event) this, (Volunteer) node);
+		return g.unlink((Event) node, (Volunteer) this);
+	}
+	
+	/**
+	 * Inserts a node into a list that is already sorted by compareTo,
+	 * keeping it sorted. A binary search finds the insertion point, so the
+	 * list never has to be re-sorted as a whole.
+	 * 
+	 * @param list a list sorted in ascending order by name
+	 * @param node the node to insert
+	 */
+	static <T extends GraphNode> void insertSorted(List<T> list, T node){
+		int index = Collections.binarySearch(list, node);
+		if(index < 0) index = -(index + 1);
+		else index++; // equal names keep their insertion order, as a stable sort would
+		list.add(index, node);
+	}
+	
+	/**
+	 * Removes the given node (by identity) from a list sorted by compareTo.
+	 * 
+	 * @param list a list sorted in ascending order by name
+	 * @param node the node to remove
+	 * @return true if the node was in the list and has been removed
+	 */
+	static <T extends GraphNode> boolean removeSorted(List<T> list, GraphNode node){
+		int index = Collections.binarySearch(list, node);
+		if(index < 0) return false;
+		// step back to the first node with an equal name, then look for this one
+		while(index > 0 && list.get(index-1).compareTo(node) == 0) index--;
+		for(;index<list.size() && list.get(index).compareTo(node) == 0;index++){
+			if(list.get(index) == node){
+				list.remove(index);
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
@@ -92,14 +124,101 @@ public abstract class GraphNode implements Comparable<GraphNode> {
 	 * given name, otherwise returns false.
 	 */
 	public boolean isAdjacentNode(String name){
-		for(GraphNode node : adjacentNodes){
-			if(node.getName().equalsIgnoreCase(name)) return true;
+		if(name == null) return false;
+		// the adjacent nodes are sorted by compareTo, so a binary search finds the name
+		List<GraphNode> adjacentNodes = getAdjacentNodes();
+		int index = searchName(adjacentNodes, name, false);
+		return index < adjacentNodes.size() && adjacentNodes.get(index).getName().equalsIgnoreCase(name);
+	}
+	
+	/**
+	 * Binary search by name in a list sorted by compareTo.
+	 * 
+	 * @param list a list sorted in ascending order by name
+	 * @param name the name to look for, compared ignoring case
+	 * @param strictlyAfter whether nodes with an equal name are skipped
+	 * @return the index of the first node whose name is not before the given
+	 * name (or after it, if strictlyAfter), or the list size if there is none
+	 */
+	static int searchName(List<? extends GraphNode> list, String name, boolean strictlyAfter){
+		int low = 0, high = list.size();
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			int c = list.get(middle).getName().compareToIgnoreCase(name);
+			if(c < 0 || (c == 0 && strictlyAfter)) low = middle + 1;
+			else high = middle;
 		}
-		return false;
+		return low;
+	}
+	
+	/**
+	 * Folds a name to the key used for case-insensitive lookups.
+	 * Each character is mapped the same way compareToIgnoreCase maps it,
+	 * so two names fold to the same key iff equalsIgnoreCase holds.
+	 * 
+	 * @param name the name to fold
+	 * @return the case-folded key for the name
+	 */
+	static String foldName(String name){
+		int i = 0;
+		// most names are already folded past some prefix, so only copy when needed
+		while(i < name.length()){
+			char c = name.charAt(i);
+			if(Character.toLowerCase(Character.toUpperCase(c)) != c) break;
+			i++;
+		}
+		if(i == name.length()) return name;
+		
+		char[] folded = name.toCharArray();
+		for(;i<folded.length;i++){
+			folded[i] = Character.toLowerCase(Character.toUpperCase(folded[i]));
+		}
+		return new String(folded);
+	}
+	
+	/**
+	 * Splits a Resource print format at its %s and %d conversions, so that
+	 * output can be built with plain appends instead of String.format.
+	 * The conversions must be filled in between the parts, in order.
+	 * 
+	 * @param format a format using only %s, %d and %%
+	 * @return the literal text before, between and after the conversions
+	 * @throws IllegalArgumentException if the format uses any other conversion
+	 */
+	static String[] splitFormat(String format){
+		List<String> parts = new ArrayList<String>();
+		StringBuilder part = new StringBuilder();
+		for(int i=0;i<format.length();i++){
+			char c = format.charAt(i);
+			if(c != '%'){
+				part.append(c);
+				continue;
+			}
+			char conversion = (i + 1 < format.length()) ? format.charAt(++i) : ' ';
+			if(conversion == '%'){
+				part.append('%');
+			}
+			else if(conversion == 's' || conversion == 'd'){
+				parts.add(part.toString());
+				part.setLength(0);
+			}
+			else {
+				throw new IllegalArgumentException(format);
+			}
+		}
+		parts.add(part.toString());
+		return parts.toArray(new String[parts.size()]);
 	}
 	
 	public abstract String toString();
 	public abstract String toFileString();
+	
+	/**
+	 * Appends what toString returns, without creating intermediate strings.
+	 * 
+	 * @param out the builder to append to
+	 */
+	abstract void appendDisplayString(StringBuilder out);
 
 	/**
 	 * compares this node with the given node based on names.
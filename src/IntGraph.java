@@ -0,0 +1,306 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The event-volunteer graph of an EventManager, stored in primitive arrays.
+ *
+ * Events and volunteers get dense int ids (ids of removed nodes are
+ * reused). The date, limit and matches of each event, and the matches
+ * of each volunteer, are kept in int arrays, so the matching code can
+ * check capacity or walk edges without touching node objects. This is
+ * the only place the matches are stored: Event and Volunteer are thin
+ * views that hold their name, their id and this graph, and their
+ * adjacency lists are read from here (see adjacentNodes).
+ *
+ * Each node's edges are kept sorted by the names of the nodes at their
+ * other end, which is the order displays and files list matches in.
+ * Nodes start without an edge array; one is allocated on the first match.
+ *
+ * The graph does no validation; EventManager checks every change first.
+ */
+public class IntGraph {
+
+	/** initial number of ids */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** edge array of a node without matches */
+	private static final int[] NO_EDGES = new int[0];
+
+	/** the event and volunteer of each id (null for unused ids) */
+	private Event[] events = new Event[INITIAL_CAPACITY];
+	private Volunteer[] volunteers = new Volunteer[INITIAL_CAPACITY];
+
+	/** date of each event id */
+	private int[] eventDate = new int[INITIAL_CAPACITY];
+
+	/** volunteer limit of each event id */
+	private int[] eventLimit = new int[INITIAL_CAPACITY];
+
+	/** matched volunteer ids of each event id, sorted by volunteer name */
+	private int[][] eventEdges = new int[INITIAL_CAPACITY][];
+
+	/** number of used entries in eventEdges[id] */
+	private int[] eventDegree = new int[INITIAL_CAPACITY];
+
+	/** matched event ids of each volunteer id, sorted by event name */
+	private int[][] volunteerEdges = new int[INITIAL_CAPACITY][];
+
+	/** number of used entries in volunteerEdges[id] */
+	private int[] volunteerDegree = new int[INITIAL_CAPACITY];
+
+	/** ids handed out so far on each side (one past the highest id) */
+	private int eventIdLimit, volunteerIdLimit;
+
+	/** stacks of removed ids waiting to be reused */
+	private int[] freeEventIds = new int[INITIAL_CAPACITY], freeVolunteerIds = new int[INITIAL_CAPACITY];
+	private int freeEventCount, freeVolunteerCount;
+
+	/**
+	 * Adds an event vertex and gives the event its id.
+	 *
+	 * @param event the event, not in any graph yet
+	 * @return the id of the new event
+	 */
+	public int addEvent(Event event){
+		int id;
+		if(freeEventCount > 0) id = freeEventIds[--freeEventCount];
+		else {
+			id = eventIdLimit++;
+			if(id == eventDate.length){
+				int capacity = id * 2;
+				events = Arrays.copyOf(events, capacity);
+				eventDate = Arrays.copyOf(eventDate, capacity);
+				eventLimit = Arrays.copyOf(eventLimit, capacity);
+				eventEdges = Arrays.copyOf(eventEdges, capacity);
+				eventDegree = Arrays.copyOf(eventDegree, capacity);
+			}
+		}
+		events[id] = event;
+		eventDate[id] = event.getDate();
+		eventLimit[id] = event.getLimit();
+		eventEdges[id] = NO_EDGES;
+		eventDegree[id] = 0;
+		event.id = id;
+		event.graph = this;
+		return id;
+	}
+
+	/**
+	 * Adds a volunteer vertex and gives the volunteer its id.
+	 *
+	 * @param vol the volunteer, not in any graph yet
+	 * @return the id of the new volunteer
+	 */
+	public int addVolunteer(Volunteer vol){
+		int id;
+		if(freeVolunteerCount > 0) id = freeVolunteerIds[--freeVolunteerCount];
+		else {
+			id = volunteerIdLimit++;
+			if(id == volunteerEdges.length){
+				int capacity = id * 2;
+				volunteers = Arrays.copyOf(volunteers, capacity);
+				volunteerEdges = Arrays.copyOf(volunteerEdges, capacity);
+				volunteerDegree = Arrays.copyOf(volunteerDegree, capacity);
+			}
+		}
+		volunteers[id] = vol;
+		volunteerEdges[id] = NO_EDGES;
+		volunteerDegree[id] = 0;
+		vol.id = id;
+		vol.graph = this;
+		return id;
+	}
+
+	/**
+	 * Removes an event vertex and all of its edges; its id may be reused.
+	 * The event leaves the graph and has no matches any more.
+	 *
+	 * @param event the event id
+	 */
+	public void removeEvent(int event){
+		Event node = events[event];
+		for(int i=eventDegree[event]-1;i>=0;i--){
+			unlink(node, volunteers[eventEdges[event][i]]);
+		}
+		eventEdges[event] = null;
+		events[event] = null;
+		node.id = -1;
+		node.graph = null;
+		if(freeEventCount == freeEventIds.length) freeEventIds = Arrays.copyOf(freeEventIds, freeEventCount * 2);
+		freeEventIds[freeEventCount++] = event;
+	}
+
+	/**
+	 * Removes a volunteer vertex and all of its edges; its id may be reused.
+	 * The volunteer leaves the graph and has no matches any more.
+	 *
+	 * @param volunteer the volunteer id
+	 */
+	public void removeVolunteer(int volunteer){
+		Volunteer node = volunteers[volunteer];
+		for(int i=volunteerDegree[volunteer]-1;i>=0;i--){
+			unlink(events[volunteerEdges[volunteer][i]], node);
+		}
+		volunteerEdges[volunteer] = null;
+		volunteers[volunteer] = null;
+		node.id = -1;
+		node.graph = null;
+		if(freeVolunteerCount == freeVolunteerIds.length) freeVolunteerIds = Arrays.copyOf(freeVolunteerIds, freeVolunteerCount * 2);
+		freeVolunteerIds[freeVolunteerCount++] = volunteer;
+	}
+
+	/**
+	 * Adds the edge between an event and a volunteer of this graph, and
+	 * books the volunteer on the event's date.
+	 */
+	public void link(Event event, Volunteer vol){
+		int e = event.id, v = vol.id;
+		eventEdges[e] = insert(eventEdges[e], eventDegree[e]++, v, volunteers);
+		volunteerEdges[v] = insert(volunteerEdges[v], volunteerDegree[v]++, e, events);
+		vol.setBooked(eventDate[e], true);
+	}
+
+	/**
+	 * Removes the edge between an event and a volunteer of this graph, and
+	 * frees the volunteer's date.
+	 *
+	 * @return true if the edge existed
+	 */
+	public boolean unlink(Event event, Volunteer vol){
+		int e = event.id, v = vol.id;
+		if(!remove(eventEdges[e], eventDegree[e], v)) return false;
+		eventDegree[e]--;
+		remove(volunteerEdges[v], volunteerDegree[v], e);
+		volunteerDegree[v]--;
+		vol.setBooked(eventDate[e], false);
+		return true;
+	}
+
+	/**
+	 * Returns the nodes matched to a node of this graph, sorted by name.
+	 * The list is a read-only view of the edges, not a copy: it changes
+	 * as matches are made and removed.
+	 *
+	 * @param node an event or volunteer of this graph
+	 * @return its volunteers if it is an event, its events if it is a volunteer
+	 */
+	public List<GraphNode> adjacentNodes(GraphNode node){
+		return new Adjacent(node.id, node instanceof Event);
+	}
+
+	/** @return the event with the id, or null if the id is unused */
+	public Event event(int event){
+		return events[event];
+	}
+
+	/** @return the volunteer with the id, or null if the id is unused */
+	public Volunteer volunteer(int volunteer){
+		return volunteers[volunteer];
+	}
+
+	/** @return the date of the event */
+	public int eventDate(int event){
+		return eventDate[event];
+	}
+
+	/** @return the volunteer limit of the event */
+	public int eventLimit(int event){
+		return eventLimit[event];
+	}
+
+	/** @return the number of volunteers matched to the event */
+	public int eventDegree(int event){
+		return eventDegree[event];
+	}
+
+	/** @return true if the event has room for another volunteer */
+	public boolean hasRoom(int event){
+		return eventDegree[event] < eventLimit[event];
+	}
+
+	/** @return the number of events matched to the volunteer */
+	public int volunteerDegree(int volunteer){
+		return volunteerDegree[volunteer];
+	}
+
+	/**
+	 * @return the i-th matched volunteer id of the event (0 <= i < eventDegree), in name order
+	 */
+	public int eventEdge(int event, int i){
+		return eventEdges[event][i];
+	}
+
+	/**
+	 * @return the i-th matched event id of the volunteer (0 <= i < volunteerDegree), in name order
+	 */
+	public int volunteerEdge(int volunteer, int i){
+		return volunteerEdges[volunteer][i];
+	}
+
+	/** @return one past the highest event id handed out so far */
+	public int eventIdLimit(){
+		return eventIdLimit;
+	}
+
+	/** @return one past the highest volunteer id handed out so far */
+	public int volunteerIdLimit(){
+		return volunteerIdLimit;
+	}
+
+	/**
+	 * Inserts an id into a list of ids sorted by the names of their nodes,
+	 * after any node with an equal name, growing the list if it is full.
+	 */
+	private static int[] insert(int[] list, int size, int value, GraphNode[] nodes){
+		if(size == list.length) list = Arrays.copyOf(list, Math.max(4, size * 2));
+		GraphNode node = nodes[value];
+		int low = 0, high = size;
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(nodes[list[middle]].compareTo(node) <= 0) low = middle + 1;
+			else high = middle;
+		}
+		System.arraycopy(list, low, list, low + 1, size - low);
+		list[low] = value;
+		return list;
+	}
+
+	/**
+	 * Removes the value, keeping the order of the others.
+	 */
+	private static boolean remove(int[] list, int size, int value){
+		for(int i=0;i<size;i++){
+			if(list[i] == value){
+				System.arraycopy(list, i + 1, list, i, size - i - 1);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The nodes matched to one node, read from its edge array.
+	 */
+	private final class Adjacent extends AbstractList<GraphNode> implements RandomAccess {
+		private final int id;
+		private final boolean isEvent;
+
+		Adjacent(int id, boolean isEvent){
+			this.id = id;
+			this.isEvent = isEvent;
+		}
+
+		@Override
+		public GraphNode get(int i){
+			if(i < 0 || i >= size()) throw new IndexOutOfBoundsException();
+			return isEvent ? volunteers[eventEdges[id][i]] : events[volunteerEdges[id][i]];
+		}
+
+		@Override
+		public int size(){
+			return isEvent ? eventDegree[id] : volunteerDegree[id];
+		}
+	}
+}
@@ -0,0 +1,273 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the operations of an EventManager.
+ *
+ * Metrics are off until an instance is attached with
+ * EventManager.setMetrics; while none is attached an operation only pays
+ * for one field read, and it never allocates. When attached, each call
+ * adds its outcome and latency to striped counters (LongAdder), so
+ * threads sharing a ConcurrentEventManager do not contend on them.
+ *
+ * Latencies go into 64 buckets by powers of two of nanoseconds, so the
+ * percentiles are upper bounds within a factor of two; the mean and the
+ * maximum are exact.
+ *
+ * Expose the metrics with registerMBean (JMX) or dump (text).
+ */
+public class ManagerMetrics implements ManagerMetricsMXBean {
+
+	/** the timed operations */
+	public enum Operation {
+		CREATE_MATCH("createMatch"),
+		REMOVE_MATCH("removeMatch"),
+		FIND_EVENT("findEvent"),
+		FIND_VOLUNTEER("findVolunteer"),
+		LOAD("load"),
+		SAVE("save");
+
+		private final String label;
+
+		Operation(String label) {
+			this.label = label;
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+	}
+
+	/** why createMatch or removeMatch returned false */
+	public enum Rejection {
+		/** no event or volunteer by that name */
+		UNKNOWN_NAME("unknownName"),
+		/** the volunteer is not available on the event's date */
+		UNAVAILABLE("unavailable"),
+		/** the volunteer already has an event on that date */
+		SAME_DATE_CONFLICT("sameDateConflict"),
+		/** the event has reached its limit */
+		OVER_LIMIT("overLimit"),
+		/** the volunteer was not matched to the event */
+		NOT_MATCHED("notMatched");
+
+		private final String label;
+
+		Rejection(String label) {
+			this.label = label;
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+	}
+
+	/** number of latency buckets; bucket b holds latencies from 2^b to 2^(b+1)-1 ns */
+	private static final int BUCKETS = 64;
+
+	private static final Operation[] OPERATIONS = Operation.values();
+	private static final Rejection[] REJECTIONS = Rejection.values();
+
+	/** per operation */
+	private final LongAdder[] calls = new LongAdder[OPERATIONS.length];
+	private final LongAdder[] failures = new LongAdder[OPERATIONS.length];
+	private final LongAdder[] totalNanos = new LongAdder[OPERATIONS.length];
+	private final LongAccumulator[] maxNanos = new LongAccumulator[OPERATIONS.length];
+
+	/** latency histogram of operation o at [o * BUCKETS + bucket] */
+	private final LongAdder[] latency = new LongAdder[OPERATIONS.length * BUCKETS];
+
+	/** rejections of operation o for reason r at [o * REJECTIONS.length + r] */
+	private final LongAdder[] rejections = new LongAdder[OPERATIONS.length * REJECTIONS.length];
+
+	/**
+	 * Creates an instance with every counter at zero.
+	 */
+	public ManagerMetrics() {
+		for (int o = 0; o < OPERATIONS.length; o++) {
+			calls[o] = new LongAdder();
+			failures[o] = new LongAdder();
+			totalNanos[o] = new LongAdder();
+			maxNanos[o] = new LongAccumulator(Math::max, 0);
+		}
+		for (int i = 0; i < latency.length; i++) {
+			latency[i] = new LongAdder();
+		}
+		for (int i = 0; i < rejections.length; i++) {
+			rejections[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records one call of an operation.
+	 *
+	 * @param operation the operation
+	 * @param succeeded false if it returned false, found nothing or threw
+	 * @param startNanos System.nanoTime() taken when the call began
+	 */
+	public void record(Operation operation, boolean succeeded, long startNanos) {
+		long nanos = Math.max(0, System.nanoTime() - startNanos);
+		int o = operation.ordinal();
+		calls[o].increment();
+		if (!succeeded) {
+			failures[o].increment();
+		}
+		totalNanos[o].add(nanos);
+		maxNanos[o].accumulate(nanos);
+		latency[o * BUCKETS + 63 - Long.numberOfLeadingZeros(nanos | 1)].increment();
+	}
+
+	/**
+	 * Records why a call of an operation failed. The call itself is still
+	 * recorded with record.
+	 *
+	 * @param operation the operation
+	 * @param reason the reason it failed
+	 */
+	public void reject(Operation operation, Rejection reason) {
+		rejections[operation.ordinal() * REJECTIONS.length + reason.ordinal()].increment();
+	}
+
+	/**
+	 * @param operation an operation
+	 * @return the number of recorded calls
+	 */
+	public long getCalls(Operation operation) {
+		return calls[operation.ordinal()].sum();
+	}
+
+	/**
+	 * @param operation an operation
+	 * @return the number of recorded calls that failed
+	 */
+	public long getFailures(Operation operation) {
+		return failures[operation.ordinal()].sum();
+	}
+
+	/**
+	 * @param operation an operation
+	 * @param reason a rejection reason
+	 * @return the number of calls of the operation rejected for that reason
+	 */
+	public long getRejections(Operation operation, Rejection reason) {
+		return rejections[operation.ordinal() * REJECTIONS.length + reason.ordinal()].sum();
+	}
+
+	/**
+	 * @param operation an operation
+	 * @param quantile from 0 to 1, e.g. 0.99
+	 * @return an upper bound of that latency quantile in nanoseconds, or 0 if there were no calls
+	 */
+	public long getLatencyPercentile(Operation operation, double quantile) {
+		int o = operation.ordinal();
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			counts[b] = latency[o * BUCKETS + b].sum();
+			total += counts[b];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(quantile * total);
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += counts[b];
+			if (seen >= rank && counts[b] > 0) {
+				return (b == 62) ? Long.MAX_VALUE : (2L << b) - 1;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public Map<String, Long> getCounters() {
+		Map<String, Long> counters = new LinkedHashMap<String, Long>();
+		for (Operation operation : OPERATIONS) {
+			counters.put(operation + ".calls", getCalls(operation));
+			counters.put(operation + ".failures", getFailures(operation));
+			for (Rejection reason : REJECTIONS) {
+				long count = getRejections(operation, reason);
+				if (count != 0) {
+					counters.put(operation + ".rejected." + reason, count);
+				}
+			}
+		}
+		return counters;
+	}
+
+	@Override
+	public Map<String, Long> getLatencyNanos() {
+		Map<String, Long> latencies = new LinkedHashMap<String, Long>();
+		for (Operation operation : OPERATIONS) {
+			int o = operation.ordinal();
+			long count = calls[o].sum();
+			latencies.put(operation + ".mean", (count == 0) ? 0 : totalNanos[o].sum() / count);
+			latencies.put(operation + ".p50", getLatencyPercentile(operation, 0.5));
+			latencies.put(operation + ".p90", getLatencyPercentile(operation, 0.9));
+			latencies.put(operation + ".p99", getLatencyPercentile(operation, 0.99));
+			latencies.put(operation + ".max", maxNanos[o].get());
+		}
+		return latencies;
+	}
+
+	@Override
+	public String dump() {
+		StringBuilder text = new StringBuilder();
+		for (Operation operation : OPERATIONS) {
+			int o = operation.ordinal();
+			long count = calls[o].sum();
+			text.append(String.format(Locale.ROOT, "%-14s calls=%d failures=%d mean=%dns p50<=%dns p90<=%dns p99<=%dns max=%dns",
+					operation, count, failures[o].sum(), (count == 0) ? 0 : totalNanos[o].sum() / count,
+					getLatencyPercentile(operation, 0.5), getLatencyPercentile(operation, 0.9),
+					getLatencyPercentile(operation, 0.99), maxNanos[o].get()));
+			for (Rejection reason : REJECTIONS) {
+				long rejected = getRejections(operation, reason);
+				if (rejected != 0) {
+					text.append(' ').append(reason).append('=').append(rejected);
+				}
+			}
+			text.append('\n');
+		}
+		return text.toString();
+	}
+
+	@Override
+	public void reset() {
+		for (int o = 0; o < OPERATIONS.length; o++) {
+			calls[o].reset();
+			failures[o].reset();
+			totalNanos[o].reset();
+			maxNanos[o].reset();
+		}
+		for (LongAdder adder : latency) {
+			adder.reset();
+		}
+		for (LongAdder adder : rejections) {
+			adder.reset();
+		}
+	}
+
+	/**
+	 * Registers this instance with the platform MBean server as
+	 * "VolunteerMatch:type=EventManager,name=" followed by the given name.
+	 *
+	 * @param name a name telling this manager apart from others in the same JVM
+	 * @return the name it was registered under
+	 * @throws JMException if the name is malformed or already taken
+	 */
+	public ObjectName registerMBean(String name) throws JMException {
+		ObjectName objectName = new ObjectName("VolunteerMatch:type=EventManager,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+}
@@ -0,0 +1,33 @@
+import java.util.Map;
+
+/**
+ * JMX view of a ManagerMetrics instance.
+ *
+ * Keys are "operation.counter", e.g. "createMatch.calls",
+ * "createMatch.failures" or "createMatch.rejected.overLimit" for the
+ * counters and "createMatch.p99" for the latencies.
+ */
+public interface ManagerMetricsMXBean {
+
+	/**
+	 * @return the call, failure and rejection counts of every operation
+	 */
+	Map<String, Long> getCounters();
+
+	/**
+	 * @return mean, median, 90th and 99th percentile and maximum latency of
+	 * every operation in nanoseconds; percentiles are rounded up to the
+	 * next power of two
+	 */
+	Map<String, Long> getLatencyNanos();
+
+	/**
+	 * @return all metrics as text, one operation per line
+	 */
+	String dump();
+
+	/**
+	 * Sets every counter and histogram back to zero.
+	 */
+	void reset();
+}
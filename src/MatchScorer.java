@@ -0,0 +1,19 @@
+/**
+ * Scores a possible match between an event and a volunteer for
+ * EventManager.autoMatch(MatchScorer).
+ *
+ * Scores may be based on anything known about the pair, e.g. seniority
+ * or distance. Only the differences between scores matter; negative
+ * scores are allowed. The scorer is called once per candidate pair and
+ * must not change the EventManager.
+ */
+public interface MatchScorer {
+
+	/**
+	 * @param event an event with room left
+	 * @param volunteer a volunteer that is available and still free on the event's date
+	 * @return how good the match is; higher is better. Must be within
+	 * +-MinCostAssignment.MAX_COST (2^40), or autoMatch throws IllegalArgumentException
+	 */
+	long score(Event event, Volunteer volunteer);
+}
@@ -0,0 +1,397 @@
+import java.util.Arrays;
+
+/**
+ * Capacitated assignment of volunteers to events at minimum total cost.
+ *
+ * Each event has a number of free slots and a list of candidate
+ * volunteers, each at a given cost. The solver assigns as many volunteers
+ * as the slots and candidate lists allow (a maximum flow) and, among all
+ * such assignments, picks one of least total cost. It uses successive
+ * shortest paths: each round runs Dijkstra on the residual graph with
+ * reduced costs (node potentials keep them non-negative even though costs
+ * may be negative) and moves one more volunteer in along the cheapest
+ * path, re-seating others as needed.
+ *
+ * Unassigned volunteers can only start a path, so they are not Dijkstra
+ * nodes: each event keeps a min-heap of its candidates by cost, from
+ * which the cheapest still unassigned volunteer seeds the event's label.
+ * With E candidate pairs, m events and f assigned volunteers the solver
+ * takes O(E) memory and O(E + f * (d * f + m * log E)) time, where d is
+ * the most events a volunteer is a candidate for.
+ * Costs must stay within +-MAX_COST so that path sums cannot overflow.
+ */
+public class MinCostAssignment {
+
+	/** largest cost magnitude accepted */
+	public static final long MAX_COST = 1L << 40;
+
+	/** distance of nodes not reached yet */
+	private static final long UNREACHED = Long.MAX_VALUE;
+
+	/** number of volunteers and of events */
+	private final int volunteers, events;
+
+	/** candidate pairs: those of event e are edgeStart[e] to edgeStart[e+1]-1 */
+	private final int[] edgeStart;
+	private final int[] edgeVolunteer, edgeEvent;
+	private final long[] edgeCost;
+
+	/** candidate pairs of each volunteer: volunteerEdges[volunteerStart[v] ..  volunteerStart[v+1]-1] */
+	private final int[] volunteerStart, volunteerEdges;
+
+	/** free slots left per event */
+	private final int[] room;
+
+	/** pair each volunteer was assigned by, -1 if none */
+	private final int[] assigned;
+
+	/** volunteers of each event as doubly linked lists: head per event, links per volunteer */
+	private final int[] first, next, previous;
+
+	/** candidates[edgeStart[e] ..]: min-heap of the pairs of event e by cost, assigned volunteers are dropped lazily */
+	private final int[] candidates;
+
+	/** size of each event's candidate heap */
+	private final int[] candidateCount;
+
+	/**
+	 * Per node: node potentials, Dijkstra distances and predecessors.
+	 * Nodes are the volunteers (0..n-1), the events (n..n+m-1) and the sink (n+m).
+	 * The source is implicit: it reaches every unassigned volunteer at cost 0,
+	 * and the potential of an unassigned volunteer is always 0.
+	 * The predecessor of an event is the pair it was reached by.
+	 */
+	private final long[] potential, distance;
+	private final int[] predecessor;
+	private final boolean[] settled;
+
+	/** binary min-heap of nodes ordered by distance, and the heap index of each node (-1 if absent) */
+	private final int[] heap, heapIndex;
+	private int heapSize;
+
+	/**
+	 * Creates a solver where every volunteer is a candidate for every event.
+	 *
+	 * @param cost cost[v * events + e] is the cost of giving volunteer v a slot of event e
+	 * @param volunteers number of volunteers
+	 * @param room free slots of each event; its length is the number of events
+	 */
+	public MinCostAssignment(long[] cost, int volunteers, int[] room){
+		this(volunteers, room, denseStart(volunteers, room.length), denseVolunteers(volunteers, room.length),
+				denseCosts(cost, volunteers, room.length));
+	}
+
+	/**
+	 * Creates a solver from the candidate lists of the events. Volunteers
+	 * should be numbered in order of preference: between equal costs the
+	 * lower index is assigned first.
+	 *
+	 * @param volunteers number of volunteers
+	 * @param room free slots of each event; its length is the number of events
+	 * @param edgeStart the pairs of event e are edgeStart[e] to edgeStart[e+1]-1; its length is events + 1
+	 * @param edgeVolunteer volunteer of each pair; a volunteer appears at most once per event;
+	 * entries past edgeStart[events] are ignored
+	 * @param edgeCost cost of each pair, within +-MAX_COST; entries past edgeStart[events] are ignored
+	 */
+	public MinCostAssignment(int volunteers, int[] room, int[] edgeStart, int[] edgeVolunteer, long[] edgeCost){
+		if(edgeStart.length != room.length + 1 || edgeStart[0] != 0) throw new IllegalArgumentException();
+		int edges = edgeStart[room.length];
+		if(edges > edgeVolunteer.length || edges > edgeCost.length) throw new IllegalArgumentException();
+		this.volunteers = volunteers;
+		this.events = room.length;
+		this.edgeStart = edgeStart;
+		this.edgeVolunteer = edgeVolunteer;
+		this.edgeCost = edgeCost;
+		this.edgeEvent = new int[edges];
+		this.volunteerStart = new int[volunteers + 1];
+		for(int e=0;e<events;e++){
+			if(edgeStart[e + 1] < edgeStart[e]) throw new IllegalArgumentException();
+			for(int k=edgeStart[e];k<edgeStart[e + 1];k++){
+				int v = edgeVolunteer[k];
+				if(v < 0 || v >= volunteers || edgeCost[k] < -MAX_COST || edgeCost[k] > MAX_COST) throw new IllegalArgumentException();
+				edgeEvent[k] = e;
+				volunteerStart[v + 1]++;
+			}
+		}
+		for(int v=0;v<volunteers;v++){
+			volunteerStart[v + 1] += volunteerStart[v];
+		}
+		this.volunteerEdges = new int[edges];
+		int[] fill = Arrays.copyOf(volunteerStart, volunteers);
+		for(int k=0;k<edges;k++){
+			volunteerEdges[fill[edgeVolunteer[k]]++] = k;
+		}
+
+		this.room = Arrays.copyOf(room, room.length);
+		this.assigned = new int[volunteers];
+		this.first = new int[events];
+		this.next = new int[volunteers];
+		this.previous = new int[volunteers];
+		Arrays.fill(assigned, -1);
+		Arrays.fill(first, -1);
+		this.candidates = new int[edges];
+		this.candidateCount = new int[events];
+
+		int nodes = volunteers + events + 1;
+		this.potential = new long[nodes];
+		this.distance = new long[nodes];
+		this.predecessor = new int[nodes];
+		this.settled = new boolean[nodes];
+		this.heap = new int[nodes];
+		this.heapIndex = new int[nodes];
+	}
+
+	private static int[] denseStart(int volunteers, int events){
+		int[] start = new int[events + 1];
+		for(int e=1;e<=events;e++){
+			start[e] = Math.multiplyExact(e, volunteers);
+		}
+		return start;
+	}
+
+	private static int[] denseVolunteers(int volunteers, int events){
+		int[] volunteer = new int[Math.multiplyExact(volunteers, events)];
+		for(int k=0;k<volunteer.length;k++){
+			volunteer[k] = k % volunteers;
+		}
+		return volunteer;
+	}
+
+	private static long[] denseCosts(long[] cost, int volunteers, int events){
+		if(cost.length != volunteers * events) throw new IllegalArgumentException();
+		long[] edgeCost = new long[cost.length];
+		for(int e=0;e<events;e++){
+			for(int v=0;v<volunteers;v++){
+				edgeCost[e * volunteers + v] = cost[v * events + e];
+			}
+		}
+		return edgeCost;
+	}
+
+	/**
+	 * Assigns volunteers to events.
+	 *
+	 * @return the number of volunteers assigned
+	 */
+	public int solve(){
+		if(edgeStart[events] == 0) return 0;
+		initPotentials();
+		int count = 0;
+		while(shortestPath()){
+			augment();
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @param volunteer a volunteer index
+	 * @return the event the volunteer was assigned to, or -1
+	 */
+	public int assignedEvent(int volunteer){
+		return (assigned[volunteer] == -1) ? -1 : edgeEvent[assigned[volunteer]];
+	}
+
+	/**
+	 * Builds the candidate heaps and sets the potentials to the shortest
+	 * distances with nothing assigned: 0 for volunteers, the cheapest cost
+	 * into each event, and the cheapest event for the sink.
+	 */
+	private void initPotentials(){
+		int sink = volunteers + events;
+		potential[sink] = UNREACHED;
+		for(int e=0;e<events;e++){
+			int base = edgeStart[e];
+			int count = edgeStart[e + 1] - base;
+			for(int i=0;i<count;i++){
+				candidates[base + i] = base + i;
+			}
+			candidateCount[e] = count;
+			for(int i=count/2-1;i>=0;i--){
+				siftDownCandidate(e, i);
+			}
+			if(count == 0) continue;	// never reached, its potential does not matter
+			long min = edgeCost[candidates[base]];
+			potential[volunteers + e] = min;
+			potential[sink] = Math.min(potential[sink], min);
+		}
+	}
+
+	/**
+	 * @return the pair of the cheapest unassigned volunteer for the event, or -1 if none is left
+	 */
+	private int cheapestCandidate(int e){
+		int base = edgeStart[e];
+		while(candidateCount[e] > 0 && assigned[edgeVolunteer[candidates[base]]] != -1){
+			// assigned volunteers never become unassigned again, so drop them for good
+			candidates[base] = candidates[base + --candidateCount[e]];
+			siftDownCandidate(e, 0);
+		}
+		return candidateCount[e] > 0 ? candidates[base] : -1;
+	}
+
+	/**
+	 * Restores the candidate heap of event e below index i.
+	 * Ties go to the lower volunteer index.
+	 */
+	private void siftDownCandidate(int e, int i){
+		int base = edgeStart[e];
+		int size = candidateCount[e];
+		int k = candidates[base + i];
+		for(;;){
+			int child = 2 * i + 1;
+			if(child >= size) break;
+			if(child + 1 < size && cheaper(candidates[base + child + 1], candidates[base + child])) child++;
+			if(!cheaper(candidates[base + child], k)) break;
+			candidates[base + i] = candidates[base + child];
+			i = child;
+		}
+		candidates[base + i] = k;
+	}
+
+	private boolean cheaper(int k, int j){
+		long a = edgeCost[k], b = edgeCost[j];
+		return a < b || (a == b && edgeVolunteer[k] < edgeVolunteer[j]);
+	}
+
+	/**
+	 * Runs Dijkstra with reduced costs from the unassigned volunteers to the
+	 * sink, then updates the potentials.
+	 *
+	 * @return false if no event with room can be reached
+	 */
+	private boolean shortestPath(){
+		int sink = volunteers + events;
+		Arrays.fill(distance, UNREACHED);
+		Arrays.fill(settled, false);
+		Arrays.fill(heapIndex, -1);
+		heapSize = 0;
+		for(int e=0;e<events;e++){
+			int k = cheapestCandidate(e);
+			int node = volunteers + e;
+			if(k != -1) relax(node, edgeCost[k] - potential[node], k);
+		}
+
+		while(heapSize > 0){
+			int u = pop();
+			settled[u] = true;
+			if(u == sink) break;
+			long d = distance[u];
+			if(u < volunteers){
+				// volunteer: move into any other event it is a candidate for
+				for(int i=volunteerStart[u];i<volunteerStart[u + 1];i++){
+					int k = volunteerEdges[i];
+					if(k == assigned[u]) continue;
+					int node = volunteers + edgeEvent[k];
+					if(!settled[node]) relax(node, d + edgeCost[k] + potential[u] - potential[node], k);
+				}
+			}
+			else {
+				int e = u - volunteers;
+				if(room[e] > 0) relax(sink, d + potential[u] - potential[sink], u);
+				// event: push one of its volunteers out, giving back its cost
+				for(int v=first[e];v!=-1;v=next[v]){
+					if(!settled[v]) relax(v, d - edgeCost[assigned[v]] + potential[u] - potential[v], u);
+				}
+			}
+		}
+
+		long limit = distance[sink];
+		if(limit == UNREACHED) return false;
+		for(int node=0;node<potential.length;node++){
+			if(node < volunteers && assigned[node] == -1) continue;	// stays 0
+			potential[node] += Math.min(distance[node], limit);
+		}
+		return true;
+	}
+
+	/**
+	 * Moves one more volunteer in along the path found by shortestPath.
+	 * Every volunteer on the path takes the event after it; the last event
+	 * loses one slot.
+	 */
+	private void augment(){
+		int e = predecessor[volunteers + events] - volunteers;
+		room[e]--;
+		for(;;){
+			int k = predecessor[volunteers + e];
+			int v = edgeVolunteer[k];
+			int old = assigned[v];
+			if(old != -1) removeFromEvent(v, edgeEvent[old]);
+			addToEvent(v, e, k);
+			if(old == -1) return;
+			e = edgeEvent[old];
+		}
+	}
+
+	private void addToEvent(int v, int e, int k){
+		assigned[v] = k;
+		previous[v] = -1;
+		next[v] = first[e];
+		if(first[e] != -1) previous[first[e]] = v;
+		first[e] = v;
+	}
+
+	private void removeFromEvent(int v, int e){
+		if(previous[v] != -1) next[previous[v]] = next[v];
+		else first[e] = next[v];
+		if(next[v] != -1) previous[next[v]] = previous[v];
+		assigned[v] = -1;
+	}
+
+	/**
+	 * Lowers the distance of a node if the new one is shorter.
+	 */
+	private void relax(int node, long d, int from){
+		if(d >= distance[node]) return;
+		distance[node] = d;
+		predecessor[node] = from;
+		int i = heapIndex[node];
+		if(i == -1){
+			i = heapSize++;
+			heap[i] = node;
+			heapIndex[node] = i;
+		}
+		siftUp(i);
+	}
+
+	private int pop(){
+		int top = heap[0];
+		heapIndex[top] = -1;
+		heapSize--;
+		if(heapSize > 0){
+			heap[0] = heap[heapSize];
+			heapIndex[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void siftUp(int i){
+		int node = heap[i];
+		while(i > 0){
+			int parent = (i - 1) >>> 1;
+			if(distance[heap[parent]] <= distance[node]) break;
+			heap[i] = heap[parent];
+			heapIndex[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = node;
+		heapIndex[node] = i;
+	}
+
+	private void siftDown(int i){
+		int node = heap[i];
+		for(;;){
+			int child = 2 * i + 1;
+			if(child >= heapSize) break;
+			if(child + 1 < heapSize && distance[heap[child + 1]] < distance[heap[child]]) child++;
+			if(distance[heap[child]] >= distance[node]) break;
+			heap[i] = heap[child];
+			heapIndex[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = node;
+		heapIndex[node] = i;
+	}
+}
@@ -0,0 +1,253 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Filters and paging for EventManager.queryEvents and queryVolunteers, for
+ * callers that only show a screenful of nodes instead of displayAll*.
+ *
+ * Results are sorted by name like the displays, and come a page at a time.
+ * The cursor of a page is the name of its last node; pass it to setAfter
+ * to get the next page. The cursor is a name, not a position, so nodes
+ * added or removed between two pages never make a page skip or repeat a
+ * node that was there all along.
+ *
+ * Pages are read straight from the manager's sorted lists: the name prefix
+ * and the cursor are found by binary search, and the walk stops as soon as
+ * the page is full, so a page costs about the same however many nodes there
+ * are. Only filters that reject most nodes make the walk longer.
+ *
+ * Every filter matches everything until it is set.
+ */
+public class NodeQuery {
+
+	/** nodes per page unless setPageSize is called */
+	public static final int DEFAULT_PAGE_SIZE = 50;
+
+	private String prefix = "";
+	private int fromDate = 1, toDate = Integer.MAX_VALUE;
+	private boolean belowLimit;
+	private boolean unmatched;
+	private int pageSize = DEFAULT_PAGE_SIZE;
+	private String after;
+
+	/**
+	 * @param prefix only nodes whose name starts with it, ignoring case like findEvent and findVolunteer
+	 * @return this query
+	 */
+	public NodeQuery setNamePrefix(String prefix){
+		if(prefix == null) throw new IllegalArgumentException();
+		this.prefix = prefix;
+		return this;
+	}
+
+	/**
+	 * Keeps the events on a date from fromDate to toDate, and the volunteers
+	 * available (matched or not) on at least one of those dates.
+	 *
+	 * @param fromDate the first date of the range
+	 * @param toDate the last date of the range, at least fromDate
+	 * @return this query
+	 */
+	public NodeQuery setDates(int fromDate, int toDate){
+		if(toDate < fromDate) throw new IllegalArgumentException();
+		this.fromDate = fromDate;
+		this.toDate = toDate;
+		return this;
+	}
+
+	/**
+	 * @param belowLimit if true, only events with room for another volunteer;
+	 * queryVolunteers does not accept this filter
+	 * @return this query
+	 */
+	public NodeQuery setBelowLimit(boolean belowLimit){
+		this.belowLimit = belowLimit;
+		return this;
+	}
+
+	/**
+	 * @param unmatched if true, only events and volunteers without any match
+	 * @return this query
+	 */
+	public NodeQuery setUnmatched(boolean unmatched){
+		this.unmatched = unmatched;
+		return this;
+	}
+
+	/**
+	 * @param pageSize the most nodes in a page, at least 1
+	 * @return this query
+	 */
+	public NodeQuery setPageSize(int pageSize){
+		if(pageSize < 1) throw new IllegalArgumentException();
+		this.pageSize = pageSize;
+		return this;
+	}
+
+	/**
+	 * @param cursor the cursor of the previous page, or null for the first page
+	 * @return this query
+	 */
+	public NodeQuery setAfter(String cursor){
+		this.after = cursor;
+		return this;
+	}
+
+	public String getNamePrefix(){
+		return prefix;
+	}
+
+	public int getFromDate(){
+		return fromDate;
+	}
+
+	public int getToDate(){
+		return toDate;
+	}
+
+	public boolean isBelowLimit(){
+		return belowLimit;
+	}
+
+	public boolean isUnmatched(){
+		return unmatched;
+	}
+
+	public int getPageSize(){
+		return pageSize;
+	}
+
+	public String getAfter(){
+		return after;
+	}
+
+	/**
+	 * Iterates over the nodes of a list sorted by name that come after the
+	 * cursor and start with the prefix.
+	 */
+	<T extends GraphNode> Iterator<T> scan(List<T> sorted){
+		return new Range<T>(sorted, firstIndex(sorted));
+	}
+
+	/**
+	 * Iterates in name order over the nodes of several lists sorted by name
+	 * that come after the cursor and start with the prefix.
+	 */
+	<T extends GraphNode> Iterator<T> merge(List<List<T>> sorted){
+		final PriorityQueue<Range<T>> heads = new PriorityQueue<Range<T>>(Math.max(1, sorted.size()));
+		for(List<T> list : sorted){
+			Range<T> range = new Range<T>(list, firstIndex(list));
+			if(range.hasNext()) heads.add(range);
+		}
+		return new Iterator<T>(){
+			@Override
+			public boolean hasNext(){
+				return !heads.isEmpty();
+			}
+
+			@Override
+			public T next(){
+				Range<T> head = heads.poll();
+				if(head == null) throw new NoSuchElementException();
+				T node = head.next();
+				if(head.hasNext()) heads.add(head);
+				return node;
+			}
+		};
+	}
+
+	/**
+	 * Fills a page with the nodes that pass the filter, then looks for one
+	 * more to tell whether there is a next page.
+	 */
+	<T extends GraphNode> Page<T> page(Iterator<T> nodes, Predicate<? super T> filter){
+		List<T> found = new ArrayList<T>(Math.min(pageSize, DEFAULT_PAGE_SIZE));
+		while(nodes.hasNext()){
+			T node = nodes.next();
+			if(!filter.test(node)) continue;
+			if(found.size() == pageSize) return new Page<T>(found, found.get(pageSize - 1).getName());
+			found.add(node);
+		}
+		return new Page<T>(found, null);
+	}
+
+	/**
+	 * @return the index of the first node of the sorted list after the cursor
+	 * and not before the prefix
+	 */
+	private int firstIndex(List<? extends GraphNode> sorted){
+		int start = GraphNode.searchName(sorted, prefix, false);
+		if(after != null) start = Math.max(start, GraphNode.searchName(sorted, after, true));
+		return start;
+	}
+
+	/**
+	 * The nodes of one sorted list from an index on, up to the first one
+	 * without the prefix. Names with a common prefix are next to each other
+	 * in the list, as compareToIgnoreCase compares character by character.
+	 */
+	private final class Range<T extends GraphNode> implements Iterator<T>, Comparable<Range<T>> {
+		private final List<T> sorted;
+		private int index;
+
+		Range(List<T> sorted, int index){
+			this.sorted = sorted;
+			this.index = index;
+		}
+
+		@Override
+		public boolean hasNext(){
+			return index < sorted.size() && sorted.get(index).getName().regionMatches(true, 0, prefix, 0, prefix.length());
+		}
+
+		@Override
+		public T next(){
+			if(!hasNext()) throw new NoSuchElementException();
+			return sorted.get(index++);
+		}
+
+		@Override
+		public int compareTo(Range<T> other){
+			return sorted.get(index).compareTo(other.sorted.get(other.index));
+		}
+	}
+
+	/**
+	 * One page of query results.
+	 */
+	public static final class Page<T extends GraphNode> {
+		private final List<T> nodes;
+		private final String nextCursor;
+
+		Page(List<T> nodes, String nextCursor){
+			this.nodes = Collections.unmodifiableList(nodes);
+			this.nextCursor = nextCursor;
+		}
+
+		/**
+		 * @return the nodes of this page, sorted by name
+		 */
+		public List<T> getNodes(){
+			return nodes;
+		}
+
+		/**
+		 * @return the cursor to pass to setAfter for the next page, or null if this is the last page
+		 */
+		public String getNextCursor(){
+			return nextCursor;
+		}
+
+		/**
+		 * @return true if there is a next page
+		 */
+		public boolean hasNext(){
+			return nextCursor != null;
+		}
+	}
+}
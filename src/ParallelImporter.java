@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Loads a VE file using several threads.
+ *
+ * The file is split into chunks at line boundaries. Each chunk is
+ * memory-mapped, tokenized, decoded and validated on a ForkJoinPool
+ * worker. The parsed records are then merged into the EventManager on
+ * the calling thread in two phases, in file order:
+ * <ol>
+ * <li>all volunteer lines, so duplicate names are resolved as in a sequential load</li>
+ * <li>all event lines, whose matches need the volunteers to exist</li>
+ * </ol>
+ * Because every volunteer is added before any event, an event line may
+ * match a volunteer listed further down the file, which a sequential
+ * load would reject. Otherwise the result is the same as readFromFile.
+ */
+public class ParallelImporter {
+
+	/** chunks are never made smaller than this */
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+	/** chunks are never made larger than this */
+	private static final long MAX_CHUNK_SIZE = 1 << 26;
+
+	/**
+	 * Imports the whole file into the manager.
+	 *
+	 * @param manager the EventManager to load into; it must not be used by other threads meanwhile
+	 * @param channel an open channel on the VE file
+	 * @param pool the pool that parses the chunks
+	 * @throws IOException if reading the file fails
+	 */
+	public static void importFile(final EventManager manager, final FileChannel channel, ForkJoinPool pool) throws IOException {
+		long[] bounds = chunkBounds(channel, pool.getParallelism());
+
+		List<ForkJoinTask<ChunkRecords>> tasks = new ArrayList<ForkJoinTask<ChunkRecords>>(bounds.length);
+		for (int i = 0; i + 1 < bounds.length; i++) {
+			final long from = bounds[i];
+			final long to = bounds[i + 1];
+			tasks.add(pool.submit(() -> {
+				ChunkRecords records = new ChunkRecords(manager);
+				new VEFileParser(records).parse(channel, from, to);
+				return records;
+			}));
+		}
+
+		List<ChunkRecords> chunks = new ArrayList<ChunkRecords>(tasks.size());
+		for (ForkJoinTask<ChunkRecords> task : tasks) {
+			try {
+				chunks.add(task.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("import interrupted", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+				throw new IOException(e.getCause());
+			}
+		}
+
+		VEFileParser.Sink sink = VEFileParser.managerSink(manager);
+		for (ChunkRecords chunk : chunks) {
+			chunk.replayVolunteers(sink);
+		}
+		for (ChunkRecords chunk : chunks) {
+			chunk.replayEvents(sink);
+		}
+	}
+
+	/**
+	 * Picks chunk boundaries that fall just after a line terminator.
+	 *
+	 * @return ascending offsets, starting at 0 and ending at the file size
+	 */
+	private static long[] chunkBounds(FileChannel channel, int parallelism) throws IOException {
+		long size = channel.size();
+		long chunkSize = size / (parallelism * 4L);
+		chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+
+		long[] bounds = new long[(int) (size / chunkSize) + 2];
+		int count = 1;		// bounds[0] is 0
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+		for (long nominal = chunkSize; nominal < size; nominal += chunkSize) {
+			long bound = nextLineStart(channel, Math.max(nominal, bounds[count - 1]), size, probe);
+			if (bound >= size) break;
+			if (bound > bounds[count - 1]) bounds[count++] = bound;
+		}
+		bounds[count++] = size;
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * @return the offset just past the first '\n' or '\r' at or after position, or size
+	 */
+	private static long nextLineStart(FileChannel channel, long position, long size, ByteBuffer probe) throws IOException {
+		while (position < size) {
+			probe.clear();
+			int n = channel.read(probe, position);
+			if (n <= 0) break;
+			for (int i = 0; i < n; i++) {
+				byte b = probe.get(i);
+				if (b == '\n' || b == '\r') return position + i + 1;
+			}
+			position += n;
+		}
+		return size;
+	}
+
+	/**
+	 * The well-formed lines of one chunk, parsed and validated but not yet applied.
+	 */
+	private static class ChunkRecords implements VEFileParser.Sink {
+		private final EventManager manager;
+		private final List<String> volunteerNames = new ArrayList<String>();
+		private final List<int[]> volunteerDates = new ArrayList<int[]>();
+		private final List<String> eventNames = new ArrayList<String>();
+		private final List<int[]> eventDateLimits = new ArrayList<int[]>();
+		private final List<List<String>> eventVolunteers = new ArrayList<List<String>>();
+
+		ChunkRecords(EventManager manager){
+			this.manager = manager;
+		}
+
+		@Override
+		public void volunteer(String name, int[] dates, int dateCount){
+			// everything but the duplicate name check can be done here
+			if (name.isEmpty() || !manager.areValidDates(dates, dateCount)) return;
+			volunteerNames.add(name);
+			volunteerDates.add(Arrays.copyOf(dates, dateCount));
+		}
+
+		@Override
+		public void event(String name, int date, int limit, List<String> volunteers){
+			if (name.isEmpty()) return;
+			eventNames.add(name);
+			eventDateLimits.add(new int[] {date, limit});
+			eventVolunteers.add(new ArrayList<String>(volunteers));
+		}
+
+		void replayVolunteers(VEFileParser.Sink sink){
+			for (int i = 0; i < volunteerNames.size(); i++) {
+				int[] dates = volunteerDates.get(i);
+				sink.volunteer(volunteerNames.get(i), dates, dates.length);
+			}
+		}
+
+		void replayEvents(VEFileParser.Sink sink){
+			for (int i = 0; i < eventNames.size(); i++) {
+				int[] dateLimit = eventDateLimits.get(i);
+				sink.event(eventNames.get(i), dateLimit[0], dateLimit[1], eventVolunteers.get(i));
+			}
+		}
+	}
+}
@@ -0,0 +1,117 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Checks that binary snapshots round-trip with the text format, and that
+ * damaged snapshots are rejected.
+ *
+ * Run from the directory holding the sample files with
+ * {@code java SnapshotCheck [file ...]} (in1.txt, in2.txt and testFile.txt
+ * if none are given). For each VE file:
+ * <ol>
+ * <li>readFromFile, then writeToFile gives the reference text;</li>
+ * <li>saveSnapshot, then loadSnapshot into a new manager;</li>
+ * <li>writeToFile of the loaded manager must give exactly the reference text.</li>
+ * </ol>
+ * The snapshot of each file is then damaged and loadSnapshot must fail
+ * with an UncheckedIOException, never load part of it: truncated to half
+ * its length, missing only its last byte, with a bad magic number, with
+ * a volunteer count or name length far past the end of the file, and the
+ * VE file itself read as a snapshot.
+ *
+ * Prints one line per check and exits with status 1 if any failed.
+ */
+public class SnapshotCheck {
+
+	/** where the volunteer count is in a snapshot, after the magic number, version and horizon */
+	private static final int VOLUNTEER_COUNT_OFFSET = 12;
+
+	private static int failures;
+
+	public static void main(String[] args) throws IOException {
+		String[] files = (args.length > 0) ? args : new String[] {"in1.txt", "in2.txt", "testFile.txt"};
+		File dir = Files.createTempDirectory("snapshot-check").toFile();
+		try {
+			for (String file : files) {
+				check(file, dir);
+			}
+		} finally {
+			for (File temp : dir.listFiles()) {
+				temp.delete();
+			}
+			dir.delete();
+		}
+		System.out.println(failures == 0 ? "all checks passed" : failures + " check(s) failed");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static void check(String file, File dir) throws IOException {
+		EventManager manager = new EventManager();
+		try {
+			VolunteerMatch.readFromFile(manager, file);
+		} catch (FileNotFoundException e) {
+			report(file + ": read", false);
+			return;
+		}
+		File text = new File(dir, "text");
+		File snapshot = new File(dir, "snapshot");
+		File roundTrip = new File(dir, "round-trip");
+		VolunteerMatch.writeToFile(manager, text.getPath());
+		VolunteerMatch.saveSnapshot(manager, snapshot.getPath());
+
+		EventManager loaded = VolunteerMatch.loadSnapshot(snapshot.getPath());
+		VolunteerMatch.writeToFile(loaded, roundTrip.getPath());
+		report(file + ": text -> snapshot -> manager -> text", loaded.getHorizon() == manager.getHorizon()
+				&& Arrays.equals(Files.readAllBytes(text.toPath()), Files.readAllBytes(roundTrip.toPath())));
+
+		byte[] bytes = Files.readAllBytes(snapshot.toPath());
+		expectRejected(file + ": truncated to half", Arrays.copyOf(bytes, bytes.length / 2), dir);
+		expectRejected(file + ": last byte missing", Arrays.copyOf(bytes, bytes.length - 1), dir);
+		byte[] badMagic = bytes.clone();
+		badMagic[0] ^= 0x20;
+		expectRejected(file + ": bad magic number", badMagic, dir);
+		expectRejected(file + ": VE file read as a snapshot", Files.readAllBytes(new File(file).toPath()), dir);
+		expectRejected(file + ": huge volunteer count", withInt(bytes, VOLUNTEER_COUNT_OFFSET, Integer.MAX_VALUE), dir);
+		expectRejected(file + ": negative volunteer count", withInt(bytes, VOLUNTEER_COUNT_OFFSET, -1), dir);
+		if (manager.getVolunteers().size() > 0) {
+			expectRejected(file + ": huge name length", withInt(bytes, VOLUNTEER_COUNT_OFFSET + 4, Integer.MAX_VALUE - 8), dir);
+		}
+	}
+
+	/**
+	 * @return a copy of the bytes with a big-endian int written at the offset
+	 */
+	private static byte[] withInt(byte[] bytes, int offset, int value) {
+		byte[] changed = bytes.clone();
+		ByteBuffer.wrap(changed).putInt(offset, value);
+		return changed;
+	}
+
+	/**
+	 * Writes the bytes to a file and checks that loadSnapshot rejects it.
+	 */
+	private static void expectRejected(String name, byte[] bytes, File dir) throws IOException {
+		File damaged = new File(dir, "damaged");
+		Files.write(damaged.toPath(), bytes);
+		boolean rejected;
+		try {
+			VolunteerMatch.loadSnapshot(damaged.getPath());
+			rejected = false;
+		} catch (UncheckedIOException e) {
+			rejected = true;
+		}
+		report(name, rejected);
+	}
+
+	private static void report(String name, boolean passed) {
+		System.out.println((passed ? "PASS " : "FAIL ") + name);
+		if (!passed) {
+			failures++;
+		}
+	}
+}
@@ -0,0 +1,193 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of the state of an EventManager.
+ *
+ * A snapshot stores exactly what a VE file stores, but in a form that can
+ * be loaded without re-parsing dates or re-running createMatch for every
+ * matched volunteer. Matches are stored as volunteer ids (the position of
+ * the volunteer in the sorted volunteer list).
+ *
+ * <pre>
+ * int     MAGIC, VERSION
+ * int     horizon (number of dates)
+ * int     volunteer count
+ *   name, int word count, long[] availability words (bit i = date i+1)
+ * int     event count
+ *   name, int date, int limit, int match count, int[] volunteer ids
+ * </pre>
+ * Names are written as an int byte length followed by UTF-8 bytes.
+ */
+public class SnapshotFile {
+
+	/** "VEMS" - first four bytes of every snapshot */
+	static final int MAGIC = 0x56454D53;
+
+	/** format version written by this class */
+	static final int VERSION = 1;
+
+	/** fewest bytes a volunteer or an event takes: an empty name and its int fields */
+	private static final int MIN_VOLUNTEER_SIZE = 8, MIN_EVENT_SIZE = 16;
+
+	/**
+	 * Writes a snapshot of the manager to the stream. The stream is not closed.
+	 *
+	 * @param manager the manager to save
+	 * @param out where to write the snapshot
+	 * @throws IOException if writing fails
+	 */
+	public static void write(EventManager manager, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(manager.getHorizon());
+
+		List<Volunteer> volunteers = manager.getVolunteers();
+		Map<Volunteer, Integer> ids = new IdentityHashMap<Volunteer, Integer>(volunteers.size() * 2);
+		data.writeInt(volunteers.size());
+		for (Volunteer vol : volunteers) {
+			ids.put(vol, ids.size());
+			writeName(data, vol.getName());
+			AvailabilityCalendar dates = vol.getAvailableDates();
+			data.writeInt(dates.wordCount());
+			for (int w = 0; w < dates.wordCount(); w++) {
+				data.writeLong(dates.word(w));
+			}
+		}
+
+		List<Event> events = manager.getEvents();
+		data.writeInt(events.size());
+		for (Event event : events) {
+			writeName(data, event.getName());
+			data.writeInt(event.getDate());
+			data.writeInt(event.getLimit());
+			List<GraphNode> matched = event.getAdjacentNodes();
+			data.writeInt(matched.size());
+			for (GraphNode vol : matched) {
+				data.writeInt(ids.get(vol));
+			}
+		}
+		data.flush();
+	}
+
+	/**
+	 * Reads a snapshot and rebuilds the manager it was taken from.
+	 * The stream is not closed.
+	 *
+	 * Every count and name length read from the snapshot is checked against
+	 * the bytes left before anything is allocated for it, so a damaged
+	 * header fails with an IOException instead of a huge allocation.
+	 *
+	 * @param in the snapshot to read
+	 * @param length the number of bytes of the snapshot, e.g. the file size
+	 * @return a new EventManager holding the saved volunteers, events and matches
+	 * @throws IOException if reading fails or the stream is not a valid snapshot
+	 */
+	public static EventManager read(InputStream in, long length) throws IOException {
+		Input data = new Input(in, length);
+		if (data.readInt() != MAGIC) throw new IOException("not a snapshot file");
+		int version = data.readInt();
+		if (version != VERSION) throw new IOException("unsupported snapshot version " + version);
+		int horizon = data.readInt();
+		if (horizon < 1 || horizon > AvailabilityCalendar.MAX_HORIZON) throw new IOException("unsupported date horizon " + horizon);
+		int maxWords = new AvailabilityCalendar(horizon).wordCount();
+
+		EventManager manager = new EventManager(horizon);
+		Volunteer[] volunteers = new Volunteer[data.readCount(MIN_VOLUNTEER_SIZE)];
+		for (int id = 0; id < volunteers.length; id++) {
+			Volunteer vol = new Volunteer(data.readName(), Collections.<Integer>emptyList(), horizon);
+			int words = data.readCount(8);
+			if (words > maxWords) throw new IOException("more availability words than the horizon needs: " + words);
+			for (int w = 0; w < words; w++) {
+				long word = data.readLong();
+				while (word != 0) {
+					long date = w * 64L + Long.numberOfTrailingZeros(word) + 1;
+					if (date > horizon) throw new IOException("date out of range: " + date);
+					vol.setAvailable((int) date);
+					word &= word - 1;
+				}
+			}
+			manager.restoreVolunteer(vol);
+			volunteers[id] = vol;
+		}
+
+		int eventCount = data.readCount(MIN_EVENT_SIZE);
+		for (int i = 0; i < eventCount; i++) {
+			Event event;
+			try {
+				event = new Event(data.readName(), data.readInt(), data.readInt(), horizon);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("invalid event in snapshot", e);
+			}
+			manager.restoreEvent(event);
+			int matches = data.readCount(4);
+			for (int m = 0; m < matches; m++) {
+				int id = data.readInt();
+				if (id < 0 || id >= volunteers.length) throw new IOException("unknown volunteer id " + id);
+				manager.link(event, volunteers[id]);
+			}
+		}
+		return manager;
+	}
+
+	private static void writeName(DataOutputStream data, String name) throws IOException {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		data.writeInt(bytes.length);
+		data.write(bytes);
+	}
+
+	/**
+	 * Reads the fields of a snapshot and counts the bytes left in it.
+	 */
+	private static final class Input {
+		private final DataInputStream data;
+		private long remaining;
+
+		Input(InputStream in, long length) {
+			this.data = new DataInputStream(in);
+			this.remaining = length;
+		}
+
+		int readInt() throws IOException {
+			take(4);
+			return data.readInt();
+		}
+
+		long readLong() throws IOException {
+			take(8);
+			return data.readLong();
+		}
+
+		/**
+		 * Reads a count of items that take at least itemSize bytes each.
+		 */
+		int readCount(int itemSize) throws IOException {
+			int count = readInt();
+			if (count < 0) throw new IOException("negative count in snapshot");
+			if ((long) count * itemSize > remaining) throw new IOException("count past the end of the snapshot: " + count);
+			return count;
+		}
+
+		String readName() throws IOException {
+			byte[] bytes = new byte[readCount(1)];
+			take(bytes.length);
+			data.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private void take(long bytes) throws IOException {
+			if (bytes > remaining) throw new EOFException("snapshot ends early");
+			remaining -= bytes;
+		}
+	}
+}
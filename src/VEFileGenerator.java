@@ -0,0 +1,365 @@
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates synthetic VE files in the format read by VolunteerMatch.readFromFile.
+ *
+ * All volunteer lines come first, then all event lines, as in writeToFile.
+ * Every line is computed from the seed and its own index alone, so the
+ * same settings always give the same file and nothing but the current
+ * line is held in memory, however large the file is.
+ *
+ * Pre-matched volunteers are spread over the events without conflicts:
+ * volunteer i can only be matched to event i % events, as that event's
+ * (i / events)-th volunteer, so no volunteer is matched twice and no event
+ * gets more volunteers than its limit. A pre-matched volunteer is always
+ * available on its event's date. With few events or low limits fewer
+ * volunteers than asked for can be pre-matched.
+ *
+ * Malformed lines are extra lines mixed in between the valid ones, each
+ * of a kind that readFromFile rejects (see ReadMe_In_err.txt). They never
+ * replace a valid line, so the valid part of the file loads the same with
+ * or without them.
+ *
+ * Run with {@code java VEFileGenerator file [options]}, or "-" as file for
+ * standard output:
+ * <pre>
+ * -volunteers 1000    number of volunteer lines
+ * -events 100         number of event lines
+ * -horizon 30         the last valid date
+ * -density 0.3        chance that a volunteer is available on a given date
+ * -minLimit 1         smallest event limit
+ * -maxLimit 20        largest event limit
+ * -matched 0.2        fraction of volunteers to pre-match
+ * -malformed 0        fraction of malformed lines
+ * -seed 1             seed of the generator
+ * </pre>
+ */
+public class VEFileGenerator {
+
+	/** bytes of output buffered before each write */
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	/** odd constant of the splitmix64 sequence */
+	private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+	/** streams of random numbers, one per kind of record */
+	private static final int VOLUNTEER = 1, EVENT = 2, MATCH = 3, MALFORMED = 4;
+
+	private long volunteers = 1000;
+	private long events = 100;
+	private int horizon = AvailabilityCalendar.DEFAULT_HORIZON;
+	private double density = 0.3;
+	private int minLimit = 1, maxLimit = 20;
+	private double matched = 0.2;
+	private double malformed = 0;
+	private long seed = 1;
+
+	/** state of the random sequence, reset at every record */
+	private long state;
+
+	/** the line being built */
+	private final StringBuilder line = new StringBuilder();
+
+	/**
+	 * @param volunteers number of volunteer lines, at least 0
+	 * @return this generator
+	 */
+	public VEFileGenerator setVolunteers(long volunteers){
+		if(volunteers < 0) throw new IllegalArgumentException();
+		this.volunteers = volunteers;
+		return this;
+	}
+
+	/**
+	 * @param events number of event lines, at least 0
+	 * @return this generator
+	 */
+	public VEFileGenerator setEvents(long events){
+		if(events < 0) throw new IllegalArgumentException();
+		this.events = events;
+		return this;
+	}
+
+	/**
+	 * @param horizon the last valid date; the file must be read by an EventManager with the same horizon
+	 * @return this generator
+	 */
+	public VEFileGenerator setHorizon(int horizon){
+		if(horizon < 1 || horizon > AvailabilityCalendar.MAX_HORIZON) throw new IllegalArgumentException();
+		this.horizon = horizon;
+		return this;
+	}
+
+	/**
+	 * @param density chance from 0 to 1 that a volunteer is available on a given date;
+	 * volunteers that get no date at all are given one random date
+	 * @return this generator
+	 */
+	public VEFileGenerator setDensity(double density){
+		if(!(density >= 0 && density <= 1)) throw new IllegalArgumentException();
+		this.density = density;
+		return this;
+	}
+
+	/**
+	 * @param minLimit smallest event limit, at least 1
+	 * @param maxLimit largest event limit, at least minLimit
+	 * @return this generator
+	 */
+	public VEFileGenerator setLimits(int minLimit, int maxLimit){
+		if(minLimit < 1 || maxLimit < minLimit) throw new IllegalArgumentException();
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		return this;
+	}
+
+	/**
+	 * @param matched fraction from 0 to 1 of the volunteers to list as matched on an event line
+	 * @return this generator
+	 */
+	public VEFileGenerator setMatched(double matched){
+		if(!(matched >= 0 && matched <= 1)) throw new IllegalArgumentException();
+		this.matched = matched;
+		return this;
+	}
+
+	/**
+	 * @param malformed fraction from 0 (inclusive) to 1 (exclusive) of all lines that are malformed
+	 * @return this generator
+	 */
+	public VEFileGenerator setMalformed(double malformed){
+		if(!(malformed >= 0 && malformed < 1)) throw new IllegalArgumentException();
+		this.malformed = malformed;
+		return this;
+	}
+
+	/**
+	 * @param seed seed of the generator
+	 * @return this generator
+	 */
+	public VEFileGenerator setSeed(long seed){
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * Writes the file.
+	 *
+	 * @param filePath the file to create or overwrite
+	 * @throws FileNotFoundException if the file cannot be created
+	 */
+	public void generate(String filePath) throws FileNotFoundException{
+		OutputStream out = new FileOutputStream(filePath);
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)) {
+			generate(writer);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes the file, one line at a time. The writer is not closed.
+	 *
+	 * @param writer where to write the lines, preferably buffered
+	 * @throws IOException if writing fails
+	 */
+	public void generate(Writer writer) throws IOException{
+		// a malformed line follows a line with this chance, so malformed is their expected share
+		double extra = malformed / (1 - malformed);
+		for(long i=0;i<volunteers;i++){
+			volunteerLine(i);
+			writer.append(line);
+			malformedLines(writer, i, extra);
+		}
+		for(long j=0;j<events;j++){
+			eventLine(j);
+			writer.append(line);
+			malformedLines(writer, volunteers + j, extra);
+		}
+	}
+
+	/**
+	 * Builds "v;name;dates" for volunteer i.
+	 */
+	private void volunteerLine(long i){
+		int matchedDate = isPreMatched(i) ? eventDate(i % events) : 0;
+		line.setLength(0);
+		line.append("v;");
+		appendVolunteerName(i);
+		line.append(';');
+		reset(VOLUNTEER, i);
+		int count = 0;
+		for(int date=1;date<=horizon;date++){
+			if(date == matchedDate || nextDouble() < density){
+				if(count++ > 0) line.append(',');
+				line.append(date);
+			}
+		}
+		if(count == 0) line.append(1 + nextInt(horizon));
+		line.append('\n');
+	}
+
+	/**
+	 * Builds "e;name;date;limit;volunteers" for event j.
+	 */
+	private void eventLine(long j){
+		int date = eventDate(j);
+		int limit = eventLimit(j);
+		line.setLength(0);
+		line.append("e;");
+		appendEventName(j);
+		line.append(';').append(date).append(';').append(limit).append(';');
+		int count = 0;
+		for(long i=j;i<volunteers && (i - j) / events < limit;i+=events){
+			if(!isPreMatched(i)) continue;
+			if(count++ > 0) line.append(',');
+			appendVolunteerName(i);
+		}
+		line.append('\n');
+	}
+
+	/**
+	 * Writes the malformed lines that follow line n, if any.
+	 */
+	private void malformedLines(Writer writer, long n, double extra) throws IOException{
+		if(extra == 0) return;
+		reset(MALFORMED, n);
+		while(nextDouble() < extra){
+			line.setLength(0);
+			switch(nextInt(6)){
+				case 0:		// unknown record type
+					line.append("k;Park ").append(n).append(";12;33");
+					break;
+				case 1:		// event date out of range
+					line.append("e;Bad date ").append(n).append(';').append(horizon + 1 + nextInt(horizon)).append(";5;");
+					break;
+				case 2:		// volunteer date out of range
+					line.append("v;Bad date ").append(n).append(";1,").append(horizon + 1);
+					break;
+				case 3:		// volunteer limit missing
+					line.append("e;No limit ").append(n).append(';').append(1 + nextInt(horizon)).append(';');
+					break;
+				case 4:		// not a number
+					line.append("e;Not a number ").append(n).append(";x;").append(minLimit).append(';');
+					break;
+				default:	// the name of the line just written, in another case
+					int start;
+					if(n < volunteers){
+						line.append("v;");
+						start = line.length();
+						appendVolunteerName(n);
+					}
+					else {
+						line.append("e;");
+						start = line.length();
+						appendEventName(n - volunteers);
+					}
+					line.replace(start, line.length(), line.substring(start).toUpperCase());
+					line.append(';').append(1 + nextInt(horizon));
+					if(n >= volunteers) line.append(';').append(minLimit).append(';');
+			}
+			line.append('\n');
+			writer.append(line);
+		}
+	}
+
+	/**
+	 * @return true if volunteer i is listed on the line of event i % events
+	 */
+	private boolean isPreMatched(long i){
+		if(events == 0 || matched == 0 || i / events >= eventLimit(i % events)) return false;
+		reset(MATCH, i);
+		return nextDouble() < matched;
+	}
+
+	private int eventDate(long j){
+		reset(EVENT, j);
+		return 1 + nextInt(horizon);
+	}
+
+	private int eventLimit(long j){
+		reset(EVENT, j);
+		nextInt(horizon);
+		return minLimit + nextInt(maxLimit - minLimit + 1);
+	}
+
+	private void appendVolunteerName(long i){
+		line.append("Volunteer ").append(i);
+	}
+
+	private void appendEventName(long j){
+		line.append("Event ").append(j);
+	}
+
+	/**
+	 * Starts the random sequence of one record.
+	 */
+	private void reset(int kind, long index){
+		state = mix(seed + kind * GOLDEN) ^ mix(index + GOLDEN);
+	}
+
+	/** splitmix64 */
+	private long nextLong(){
+		return mix(state += GOLDEN);
+	}
+
+	private static long mix(long z){
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/** @return a double from 0 (inclusive) to 1 (exclusive) */
+	private double nextDouble(){
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/** @return an int from 0 (inclusive) to bound (exclusive) */
+	private int nextInt(int bound){
+		return (int) ((nextLong() >>> 33) * bound >>> 31);
+	}
+
+	public static void main(String[] args) throws IOException{
+		if(args.length == 0){
+			System.err.println("usage: java VEFileGenerator file|- [-volunteers n] [-events n] [-horizon n] [-density p]"
+					+ " [-minLimit n] [-maxLimit n] [-matched p] [-malformed p] [-seed n]");
+			System.exit(2);
+		}
+		VEFileGenerator generator = new VEFileGenerator();
+		int minLimit = generator.minLimit, maxLimit = generator.maxLimit;
+		for(int i=1;i<args.length;i+=2){
+			String value = (i + 1 < args.length) ? args[i + 1] : "";
+			switch(args[i]){
+				case "-volunteers": generator.setVolunteers(Long.parseLong(value)); break;
+				case "-events": generator.setEvents(Long.parseLong(value)); break;
+				case "-horizon": generator.setHorizon(Integer.parseInt(value)); break;
+				case "-density": generator.setDensity(Double.parseDouble(value)); break;
+				case "-minLimit": minLimit = Integer.parseInt(value); break;
+				case "-maxLimit": maxLimit = Integer.parseInt(value); break;
+				case "-matched": generator.setMatched(Double.parseDouble(value)); break;
+				case "-malformed": generator.setMalformed(Double.parseDouble(value)); break;
+				case "-seed": generator.setSeed(Long.parseLong(value)); break;
+				default:
+					System.err.println("unknown option " + args[i]);
+					System.exit(2);
+			}
+		}
+		generator.setLimits(minLimit, maxLimit);
+		if(args[0].equals("-")){
+			Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+			generator.generate(writer);
+			writer.flush();
+		}
+		else {
+			generator.generate(args[0]);
+		}
+	}
+}
@@ -0,0 +1,392 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single-pass parser for VE files (see VolunteerMatch.readFromFile).
+ * A file can be read as a stream or memory-mapped and parsed in place.
+ *
+ * Lines are tokenized directly in a byte buffer: field and date boundaries
+ * are kept as offsets and dates/limits are parsed from the bytes, so the
+ * only objects created per line are the names handed to the EventManager.
+ *
+ * The accept/reject rules are the ones readFromFile has always applied on
+ * top of String.trim and String.split:
+ * <ul>
+ * <li>the line and every field are trimmed of characters up to ' '</li>
+ * <li>trailing empty fields (and trailing empty dates/names) are dropped</li>
+ * <li>volunteer lines have 2 or 3 fields, event lines have 4 or 5</li>
+ * <li>a volunteer whose first date is blank is added with no dates</li>
+ * </ul>
+ * Lines that used to stop the load with an exception (a lone "e", or a
+ * date/limit that is not a number) are skipped like any other bad line.
+ *
+ * Files are read in the platform charset, which must be ASCII compatible
+ * (such as UTF-8 or ISO-8859-1); lines end at '\n' or '\r'.
+ */
+public class VEFileParser {
+
+	/** initial size of the read buffer; it grows if a single line is longer */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** size of each mapped window of a file; it grows if a single line is longer */
+	private static final int WINDOW_SIZE = 1 << 26;
+
+	/** result of parseInt for text that is not a valid int */
+	private static final long NOT_AN_INT = Long.MIN_VALUE;
+
+	/** the most fields a valid line can have */
+	private static final int MAX_FIELDS = 5;
+
+	/** where parsed volunteers and events are sent */
+	private final Sink sink;
+
+	/** charset used to decode names */
+	private final Charset charset = Charset.defaultCharset();
+
+	/** start offsets of the fields of the current line */
+	private final int[] fieldStart = new int[MAX_FIELDS + 1];
+
+	/** end offsets (exclusive) of the fields of the current line */
+	private final int[] fieldEnd = new int[MAX_FIELDS + 1];
+
+	/** reusable buffer for the dates of a volunteer line */
+	private int[] dates = new int[32];
+
+	/** scratch space for decoding names that are not in a heap buffer */
+	private byte[] nameBytes = new byte[64];
+
+	/** reusable list for the volunteer names of an event line */
+	private final List<String> volunteerNames = new ArrayList<String>();
+
+	/**
+	 * Receives the well-formed lines of a VE file.
+	 * Lists passed to a sink are reused by the parser and must be copied if kept.
+	 */
+	interface Sink {
+		/**
+		 * @param name the trimmed volunteer name
+		 * @param dates array holding the available dates as written
+		 * @param dateCount how many entries of dates are used
+		 */
+		void volunteer(String name, int[] dates, int dateCount);
+
+		/**
+		 * @param name the trimmed event name
+		 * @param date the event date as written
+		 * @param limit the volunteer limit as written
+		 * @param volunteerNames the trimmed names of the matched volunteers
+		 */
+		void event(String name, int date, int limit, List<String> volunteerNames);
+	}
+
+	/**
+	 * Sink that applies every line to an EventManager right away,
+	 * which is what readFromFile has always done.
+	 */
+	private static class ManagerSink implements Sink {
+		private final EventManager manager;
+
+		ManagerSink(EventManager manager){
+			this.manager = manager;
+		}
+
+		@Override
+		public void volunteer(String name, int[] dates, int dateCount){
+			manager.addVolunteer(name, dates, dateCount);
+		}
+
+		@Override
+		public void event(String name, int date, int limit, List<String> volunteerNames){
+			if(!manager.addEvent(name, date, limit)) return;
+			String[] volunteers = volunteerNames.toArray(new String[volunteerNames.size()]);
+			String[] events = new String[volunteers.length];
+			Arrays.fill(events, name);
+			if(manager.createMatches(events, volunteers)) return;
+			// some volunteer was rejected: keep the others, as a line always has
+			for(String volunteerName : volunteers){
+				manager.createMatch(name, volunteerName);
+			}
+		}
+	}
+
+	/**
+	 * Constructs a parser that adds everything it reads to the given manager.
+	 *
+	 * @param manager the EventManager to load into
+	 */
+	public VEFileParser(EventManager manager){
+		if(manager == null) throw new IllegalArgumentException();
+		this.sink = new ManagerSink(manager);
+	}
+
+	/**
+	 * @param manager the EventManager to apply lines to
+	 * @return a sink that applies each line to the manager as readFromFile does
+	 */
+	static Sink managerSink(EventManager manager){
+		return new ManagerSink(manager);
+	}
+
+	/**
+	 * Constructs a parser that sends every well-formed line to the given sink.
+	 *
+	 * @param sink receives the parsed lines
+	 */
+	VEFileParser(Sink sink){
+		if(sink == null) throw new IllegalArgumentException();
+		this.sink = sink;
+	}
+
+	/**
+	 * Reads the whole stream and parses it line by line.
+	 * The stream is not closed.
+	 *
+	 * @param in the VE file contents
+	 * @throws IOException if reading from the stream fails
+	 */
+	public void parse(InputStream in) throws IOException {
+		byte[] buf = new byte[BUFFER_SIZE];
+		ByteBuffer view = ByteBuffer.wrap(buf);
+		int fill = 0;		// bytes of buf in use
+		int n;
+		while((n = in.read(buf, fill, buf.length - fill)) != -1){
+			int lineStart = 0;
+			for(int i=fill;i<fill+n;i++){
+				byte b = buf[i];
+				if(b == '\n' || b == '\r'){
+					parseLine(view, lineStart, i);
+					lineStart = i+1;
+				}
+			}
+			fill += n;
+			// keep the unfinished line at the front of the buffer
+			fill -= lineStart;
+			System.arraycopy(buf, lineStart, buf, 0, fill);
+			if(fill == buf.length){
+				byte[] bigger = new byte[buf.length * 2];
+				System.arraycopy(buf, 0, bigger, 0, fill);
+				buf = bigger;
+				view = ByteBuffer.wrap(buf);
+			}
+		}
+		if(fill > 0) parseLine(view, 0, fill);
+	}
+
+	/**
+	 * Parses a whole file by memory-mapping it and reading the lines in
+	 * place, one window at a time. Windows end at a line boundary, so
+	 * files larger than a single mapping (2 GB) are handled too.
+	 *
+	 * @param channel an open channel on the VE file
+	 * @throws IOException if mapping or reading the file fails
+	 */
+	public void parse(FileChannel channel) throws IOException {
+		parse(channel, 0, channel.size());
+	}
+
+	/**
+	 * Parses the lines in the byte range [from, to) of a file by
+	 * memory-mapping it. The range must start and end at line boundaries.
+	 *
+	 * @param channel an open channel on the VE file
+	 * @param from offset of the first byte to parse
+	 * @param to offset just past the last byte to parse
+	 * @throws IOException if mapping or reading the file fails
+	 */
+	void parse(FileChannel channel, long from, long to) throws IOException {
+		long size = to;
+		long position = from;
+		int window = WINDOW_SIZE;
+		while(position < size){
+			int length = (int) Math.min(window, size - position);
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			int lineStart = 0;
+			for(int i=0;i<length;i++){
+				byte b = buf.get(i);
+				if(b == '\n' || b == '\r'){
+					parseLine(buf, lineStart, i);
+					lineStart = i+1;
+				}
+			}
+			if(position + length == size){
+				if(lineStart < length) parseLine(buf, lineStart, length);
+				return;
+			}
+			if(lineStart == 0){
+				// a single line fills the window: retry with a bigger one
+				if(window == Integer.MAX_VALUE) throw new IOException("line too long at offset " + position);
+				window = (int) Math.min(2L * window, Integer.MAX_VALUE);
+				continue;
+			}
+			position += lineStart;
+		}
+	}
+
+	/**
+	 * Parses one line (without its line terminator) and applies it to the manager.
+	 * Invalid lines are ignored.
+	 *
+	 * @param buf the buffer holding the line
+	 * @param start offset of the first byte of the line
+	 * @param end offset just past the last byte of the line
+	 */
+	void parseLine(ByteBuffer buf, int start, int end){
+		start = trimStart(buf, start, end);
+		end = trimEnd(buf, start, end);
+
+		// split on ';', remembering the last non-empty field
+		int fieldCount = 0;
+		int count = 0;
+		int from = start;
+		for(int i=start;i<=end;i++){
+			if(i == end || buf.get(i) == ';'){
+				if(fieldCount <= MAX_FIELDS){
+					fieldStart[fieldCount] = from;
+					fieldEnd[fieldCount] = i;
+				}
+				fieldCount++;
+				if(i > from) count = fieldCount;
+				from = i+1;
+			}
+		}
+		if(count == 0) return;
+
+		int typeStart = trimStart(buf, fieldStart[0], fieldEnd[0]);
+		int typeEnd = trimEnd(buf, typeStart, fieldEnd[0]);
+		if(typeEnd - typeStart != 1) return;
+		int type = buf.get(typeStart) | 0x20; // lower case for ASCII letters
+		if(type == 'v') parseVolunteer(buf, count);
+		else if(type == 'e') parseEvent(buf, count);
+	}
+
+	/**
+	 * v;{name};{date},{date}...
+	 */
+	private void parseVolunteer(ByteBuffer buf, int count){
+		if(count < 2 || count > 3) return;
+
+		int dateCount = 0;
+		if(count == 3){
+			int start = fieldStart[2];
+			int end = lastToken(buf, start, fieldEnd[2]);
+			// a blank first date means the volunteer has no dates
+			int firstEnd = tokenEnd(buf, start, end);
+			if(end > start && trimEnd(buf, start, firstEnd) > trimStart(buf, start, firstEnd)){
+				for(int from=start;from<=end;){
+					int to = tokenEnd(buf, from, end);
+					long date = parseInt(buf, from, to);
+					if(date == NOT_AN_INT) return;
+					if(dateCount == dates.length){
+						int[] bigger = new int[dates.length * 2];
+						System.arraycopy(dates, 0, bigger, 0, dateCount);
+						dates = bigger;
+					}
+					dates[dateCount++] = (int) date;
+					from = to+1;
+				}
+			}
+		}
+		// the name is only decoded once the line is known to be well formed
+		sink.volunteer(decodeTrimmed(buf, fieldStart[1], fieldEnd[1]), dates, dateCount);
+	}
+
+	/**
+	 * e;{name};{date};{limit};{volunteer},{volunteer}...
+	 */
+	private void parseEvent(ByteBuffer buf, int count){
+		if(count < 4 || count > 5) return;
+		long date = parseInt(buf, fieldStart[2], fieldEnd[2]);
+		long limit = parseInt(buf, fieldStart[3], fieldEnd[3]);
+		if(date == NOT_AN_INT || limit == NOT_AN_INT) return;
+
+		volunteerNames.clear();
+		if(count == 5){
+			int start = trimStart(buf, fieldStart[4], fieldEnd[4]);
+			int end = lastToken(buf, start, trimEnd(buf, start, fieldEnd[4]));
+			for(int from=start;from<end;){
+				int to = tokenEnd(buf, from, end);
+				volunteerNames.add(decodeTrimmed(buf, from, to));
+				from = to+1;
+			}
+		}
+		sink.event(decodeTrimmed(buf, fieldStart[1], fieldEnd[1]), (int) date, (int) limit, volunteerNames);
+	}
+
+	/**
+	 * Drops trailing empty tokens of a comma-separated list, like String.split does.
+	 *
+	 * @return the end of the last non-empty token, or start if there is none
+	 */
+	private static int lastToken(ByteBuffer buf, int start, int end){
+		while(end > start && buf.get(end-1) == ',') end--;
+		return end;
+	}
+
+	/**
+	 * @return the offset of the ',' ending the token at from, or end
+	 */
+	private static int tokenEnd(ByteBuffer buf, int from, int end){
+		while(from < end && buf.get(from) != ',') from++;
+		return from;
+	}
+
+	private static int trimStart(ByteBuffer buf, int start, int end){
+		while(start < end && (buf.get(start) & 0xff) <= ' ') start++;
+		return start;
+	}
+
+	private static int trimEnd(ByteBuffer buf, int start, int end){
+		while(end > start && (buf.get(end-1) & 0xff) <= ' ') end--;
+		return end;
+	}
+
+	/**
+	 * Parses a trimmed decimal int the way Integer.parseInt does
+	 * (optional sign, at least one digit, no overflow).
+	 *
+	 * @return the value, or NOT_AN_INT if the text is not a valid int
+	 */
+	private static long parseInt(ByteBuffer buf, int start, int end){
+		start = trimStart(buf, start, end);
+		end = trimEnd(buf, start, end);
+		boolean negative = false;
+		if(start < end && (buf.get(start) == '-' || buf.get(start) == '+')){
+			negative = buf.get(start) == '-';
+			start++;
+		}
+		if(start == end) return NOT_AN_INT;
+		long value = 0;
+		for(int i=start;i<end;i++){
+			int digit = buf.get(i) - '0';
+			if(digit < 0 || digit > 9) return NOT_AN_INT;
+			value = value * 10 + digit;
+			if(value > (long) Integer.MAX_VALUE + 1) return NOT_AN_INT;
+		}
+		if(negative) return -value;
+		return value > Integer.MAX_VALUE ? NOT_AN_INT : value;
+	}
+
+	/**
+	 * Decodes the trimmed byte range as a String.
+	 */
+	private String decodeTrimmed(ByteBuffer buf, int start, int end){
+		start = trimStart(buf, start, end);
+		end = trimEnd(buf, start, end);
+		int length = end - start;
+		if(buf.hasArray()){
+			return new String(buf.array(), buf.arrayOffset() + start, length, charset);
+		}
+		if(length > nameBytes.length) nameBytes = new byte[Math.max(length, nameBytes.length * 2)];
+		for(int i=0;i<length;i++){
+			nameBytes[i] = buf.get(start+i);
+		}
+		return new String(nameBytes, 0, length, charset);
+	}
+}
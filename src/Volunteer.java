@@ -1,4 +1,3 @@
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -11,25 +10,46 @@ import java.util.List;
 public class Volunteer extends GraphNode {
 	
 	/** 
-	 * A boolean array of size 30 corresponding to each date
-	 *  from 1-30 (Note that date i corresponds to i-1 index).
-	 *  Maintain this array to keep track of whether this volunteer is 
-	 *  available on  given date or not
-	 *  
-	 *  */
-	private boolean availableDatesAry[] = new boolean[30]; //initialized as false
+	 * The dates from 1 to the horizon this volunteer is available on
+	 * (initially none).
+	 */
+	private AvailabilityCalendar availableDates;
+	
+	/**
+	 * The dates this volunteer is matched on.
+	 * Kept in step with the adjacent events so same-date checks are O(1).
+	 */
+	private AvailabilityCalendar bookedDates;
+	
+	/** Resource display formats, split at their conversions */
+	private static final String[] DISPLAY_FORMAT = splitFormat(Resource.STR_VOLUNTEER_PRINT_FORMAT);
+	private static final String[] DISPLAY_EVENT_FORMAT = splitFormat(Resource.STR_VOLUNTEER_EVENT_PRINT_FORMAT);
 	
 	/**
-	 * Constructor for the Volunteer.
+	 * Constructor for the Volunteer, with dates from 1 to 30.
 	 * Create an instance of super class with name.
-	 * Set availableDatesAry to true for availableDates.
+	 * Set the availableDates.
 	 * Throw IllegalArgumentException if duplicate dates are there in the list
 	 * 
 	 * @param name
 	 * @param availableDates
 	 */
 	public Volunteer(String name, List<Integer> availableDates){
+		this(name, availableDates, AvailabilityCalendar.DEFAULT_HORIZON);
+	}
+	
+	/**
+	 * Constructor for a Volunteer whose dates run from 1 to the given horizon.
+	 * Throw IllegalArgumentException if a date is out of range or listed twice.
+	 * 
+	 * @param name
+	 * @param availableDates
+	 * @param horizon the last valid date
+	 */
+	public Volunteer(String name, List<Integer> availableDates, int horizon){
 		super(name);
+		this.availableDates = new AvailabilityCalendar(horizon);
+		this.bookedDates = new AvailabilityCalendar(horizon);
 		for(int date : availableDates){
 			if(!setAvailable(date)) {
 				throw new IllegalArgumentException();
@@ -45,37 +65,63 @@ public class Volunteer extends GraphNode {
 	 * @return true is volunteer is available on this date, otherwise false
 	 */
 	public boolean isAvailable(int date){
-		if(date<1 || date>30) throw new IllegalArgumentException();
-		return availableDatesAry[date-1];
+		return availableDates.contains(date);
 	}
 	
 	/**
-	 * Method to set availableDatesAry to true for the given date
+	 * Method to mark the volunteer available on the given date
 	 * 
 	 * @param date
-	 * @return true is operation is successful. Return false if availableDatesAry
-	 * is already true for the given date.
+	 * @return true is operation is successful. Return false if the volunteer
+	 * is already available on the given date.
 	 */
 	public boolean setAvailable(int date){
-		if(!isAvailable(date)) {
-			availableDatesAry[date-1] = true;
-			return true;
-		}
-		return false;
+		return availableDates.add(date);
 	}
 	
 	/**
-	 * Method to set availableDatesAry to false for the given date
+	 * Method to mark the volunteer unavailable on the given date
 	 * 
-	 * @return true is operation is successful. Return false if availableDatesAry
-	 * is already false for the given date.
+	 * @return true is operation is successful. Return false if the volunteer
+	 * is already unavailable on the given date.
 	 */
 	public boolean setUnavailable(int date){
-		if(isAvailable(date)) {
-			availableDatesAry[date-1] = false;
-			return true;
-		}
-		return false;
+		return availableDates.remove(date);
+	}
+	
+	/**
+	 * Method to check whether volunteer is available on at least one of
+	 * the given dates. The check is done 64 dates at a time.
+	 * 
+	 * @param dates the dates to check
+	 * @return true if the volunteer is available on any of the dates
+	 */
+	public boolean isAvailableOnAny(AvailabilityCalendar dates){
+		return availableDates.intersects(dates);
+	}
+	
+	/**
+	 * Method to iterate over the available dates.
+	 * 
+	 * @param from the date to start at
+	 * @return the first date at or after from the volunteer is available on, or -1
+	 */
+	public int nextAvailableDate(int from){
+		return availableDates.nextDate(from);
+	}
+	
+	/**
+	 * @return a copy of the dates the volunteer is available on
+	 */
+	public AvailabilityCalendar getAvailableDates(){
+		return new AvailabilityCalendar(availableDates);
+	}
+	
+	/**
+	 * @return the last valid date for this volunteer
+	 */
+	public int getHorizon(){
+		return availableDates.getHorizon();
 	}
 	
 	/**
@@ -89,6 +135,26 @@ public class Volunteer extends GraphNode {
 	public boolean hasEvent(String name){
 		return isAdjacentNode(name);
 	}
+	
+	/**
+	 * Method to check whether volunteer is already matched to an event
+	 * on the given date.
+	 * 
+	 * @param date
+	 * @return true if one of the matched events occurs on this date
+	 */
+	public boolean isBookedOn(int date){
+		return bookedDates.contains(date);
+	}
+	
+	/**
+	 * Marks a date as booked or free; called by the IntGraph holding this
+	 * volunteer whenever a match on that date is made or removed.
+	 */
+	void setBooked(int date, boolean booked){
+		if(booked) bookedDates.add(date);
+		else bookedDates.remove(date);
+	}
 
 	/**
 	 * Method to create string format for displaying volunteer 
@@ -96,7 +162,7 @@ public class Volunteer extends GraphNode {
 	 * 
 	 * Note that while printing available dates for the volunteer, 
 	 * current available dates are used, using information from 
-	 * availableDatesAry.
+	 * availableDates.
 	 * 
 	 * Resource.STR_VOLUNTEER_PRINT_FORMAT
 	 * Resource.STR_VOLUNTEER_EVENT_PRINT_FORMAT
@@ -105,31 +171,31 @@ public class Volunteer extends GraphNode {
 	@Override
 	public String toString() {
 		StringBuilder strBuilder = new StringBuilder();
-		
-		StringBuilder availableDatesStrBuilder = new StringBuilder();
-		boolean isFirst = true;
-		for(int i=0;i<availableDatesAry.length;i++){
-			if(availableDatesAry[i]){
-				if(isFirst) isFirst = false;
-				else availableDatesStrBuilder.append(",");
-				
-				availableDatesStrBuilder.append(i+1);
-			}
-		}
-		strBuilder.append(String.format(Resource.STR_VOLUNTEER_PRINT_FORMAT, getName(),availableDatesStrBuilder.toString()));
+		appendDisplayString(strBuilder);
+		return strBuilder.toString();
+	}
+	
+	/**
+	 * Appends the same text as toString, filling in the Resource formats by hand.
+	 */
+	@Override
+	void appendDisplayString(StringBuilder out) {
+		out.append(DISPLAY_FORMAT[0]).append(getName()).append(DISPLAY_FORMAT[1]);
+		appendDates(out, availableDates);
+		out.append(DISPLAY_FORMAT[2]);
 
 		List<GraphNode> adjList = getAdjacentNodes();
 		if(adjList.isEmpty()){
-			strBuilder.append(Resource.STR_DISPLAY_NO_MATCHES);
+			out.append(Resource.STR_DISPLAY_NO_MATCHES);
 		}
 		else {
 			for(int i=0;i<adjList.size();i++){
 				Event e = (Event) adjList.get(i);
-				strBuilder.append(String.format(Resource.STR_VOLUNTEER_EVENT_PRINT_FORMAT, e.getName(), e.getDate()));
+				out.append(DISPLAY_EVENT_FORMAT[0]).append(e.getName())
+					.append(DISPLAY_EVENT_FORMAT[1]).append(e.getDate())
+					.append(DISPLAY_EVENT_FORMAT[2]);
 			}
 		}
-		
-		return strBuilder.toString();
 	}
 
 	/**
@@ -137,7 +203,7 @@ public class Volunteer extends GraphNode {
 	 * to the file. 
 	 * Note that while printing available dates for the volunteer, 
 	 * current available dates are used, using information from 
-	 * availableDatesAry.
+	 * availableDates.
 	 * 
 	 * v;{name};{date},{date}...
 	 */
@@ -148,22 +214,24 @@ public class Volunteer extends GraphNode {
 		strBuilder.append(";");
 		strBuilder.append(getName()); // name
 		strBuilder.append(";");
-		// availableDates
-		boolean[] availableDatesTmp = Arrays.copyOf(this.availableDatesAry, this.availableDatesAry.length);
-		for(GraphNode n : getAdjacentNodes()){
-			Event e = (Event) n;
-			availableDatesTmp[e.getDate()-1] = true;
-		}
-		boolean isFirst = true;
-		for(int i=0;i<availableDatesTmp.length;i++){
-			if(availableDatesTmp[i]){
-				if(isFirst) isFirst = false;
-				else strBuilder.append(",");
-				
-				strBuilder.append(i+1);
-			}
-		}
+		// availableDates, plus the dates of matched events
+		AvailabilityCalendar availableDatesTmp = new AvailabilityCalendar(availableDates);
+		availableDatesTmp.addAll(bookedDates);
+		appendDates(strBuilder, availableDatesTmp);
 		
 		return strBuilder.toString();
 	}
+	
+	/**
+	 * Appends the dates as a comma-separated list in ascending order.
+	 */
+	private static void appendDates(StringBuilder strBuilder, AvailabilityCalendar dates){
+		boolean isFirst = true;
+		for(int date=dates.nextDate(1);date!=-1;date=dates.nextDate(date+1)){
+			if(isFirst) isFirst = false;
+			else strBuilder.append(",");
+			
+			strBuilder.append(date);
+		}
+	}
 }
@@ -12,12 +12,26 @@
 //	N/A 
 //////////////////////////// 80 columns wide //////////////////////////////////
 
-import java.io.File;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * VolunteerMatch is the main class for this program.
@@ -41,6 +55,14 @@ public class VolunteerMatch {
 	
 	/** Use this scanner to read from prompt*/
 	private final static Scanner scn = new Scanner(System.in);
+	
+	/** size of the buffer used when saving to or loading from a binary file */
+	private final static int WRITE_BUFFER_SIZE = 1 << 16;
+
+	private final static String STR_ERROR_HORIZON_PRINT_FORMAT = "ERROR: The horizon must be a number from 1 to %d (%s)\n";
+	private final static String STR_ERROR_OPTION_PRINT_FORMAT = "ERROR: Unknown option or missing value (%s)\n";
+	private final static String STR_ERROR_LOG_PRINT_FORMAT = "ERROR: Failed to use the log directory (%s) - %s\n";
+	private final static String STR_ERROR_LOG_WRITE_PRINT_FORMAT = "ERROR: Failed to write the log - %s\n";
 
 	/**
 	 * The main method of this program.
@@ -51,11 +73,56 @@ public class VolunteerMatch {
 	 * USE ONLY "System.out.format(str, arg,..)" or "System.out.print(str)"
 	 * THE USE OF "System.out.println(str)" MAY CAUSE ADDITIONAL NEW LINES IN YOUR PROGRAM
 	 * DO COMPARE TO PROVIDED SAMPLE RUNS TO CHECK WHETHER YOUR OUTPUT HAS ADDITIONAL NEW LINES
+	 * 
+	 * Options, before -batch if it is given:
+	 * <pre>
+	 * -horizon N      dates run from 1 to N instead of 1 to 30
+	 * -log DIR        keep a write-ahead log of every change in DIR; if DIR
+	 *                 already holds a log, the state is first recovered from
+	 *                 it (with the horizon it was saved with)
+	 * </pre>
+	 * The log is closed, with every change on disk, on quit or at the end of the script.
 	 */
 	public static void main(String[] args){
 		
+		int horizon = AvailabilityCalendar.DEFAULT_HORIZON;
+		String logDirectory = null;
+		int next = 0;	//First argument after the options.
+		while (next < args.length && !args[next].equals("-batch")) {
+			String value = (next + 1 < args.length) ? args[next + 1] : null;
+			if (args[next].equals("-horizon") && value != null) {
+				horizon = parseHorizon(value);
+				if (horizon == -1) {
+					System.out.format(STR_ERROR_HORIZON_PRINT_FORMAT, AvailabilityCalendar.MAX_HORIZON, value);
+					System.exit(2);
+				}
+				next += 2;
+			}
+			else if (args[next].equals("-log") && value != null) {
+				logDirectory = value;
+				next += 2;
+			}
+			else {
+				System.out.format(STR_ERROR_OPTION_PRINT_FORMAT, args[next]);
+				System.exit(2);
+			}
+		}
+		
 		// Use an EventManager to store events and volunteers and matches
-		EventManager manager = new EventManager();
+		EventManager manager = new EventManager(horizon);
+		if (logDirectory != null) {
+			WriteAheadLog log = startLog(manager, logDirectory);
+			if (log == null) {
+				System.exit(2);
+			}
+			manager = log.getManager();
+		}
+		
+		if (next < args.length) {
+			System.exit(runBatch(manager, (next + 1 < args.length) ? args[next + 1] : "-"));
+		}
+		
+		String availableDatePrompt = availableDatePrompt(horizon);
 
 		boolean isContinued = true;
 		while(isContinued){
@@ -71,7 +138,7 @@ public class VolunteerMatch {
 					String filePath = scn.nextLine().trim();
 					try{
 						readFromFile(manager, filePath);
-					} catch(FileNotFoundException e){
+					} catch(FileNotFoundException | UncheckedIOException e){
 						System.out.format(Resource.STR_ERROR_READ_FILE_PRINT_FORMAT, filePath);
 					}
 					break;
@@ -83,7 +150,7 @@ public class VolunteerMatch {
 					String filePath = scn.nextLine().trim();
 					try{
 						writeToFile(manager, filePath);
-					} catch(FileNotFoundException e){
+					} catch(FileNotFoundException | UncheckedIOException e){	//Also a write error, e.g. a full disk.
 						System.out.format(Resource.STR_ERROR_WRITE_FILE_PRINT_FORMAT, filePath);
 					}
 					break;
@@ -131,7 +198,7 @@ public class VolunteerMatch {
 					// Resource.STR_ERROR_VOLUNTEER_CREATE_FAILED_PRINT_FORMAT
 					System.out.print(Resource.STR_INPUT_VOLUNTEER_NAME);
 					String volunteerName = scn.nextLine().trim();
-					System.out.print(Resource.STR_INPUT_VOLUNTEER_AVAILABLE_DATE);
+					System.out.print(availableDatePrompt);
 					input = scn.nextLine().trim();
 					String[] dateStrSplitAry = input.split(",",-1);
 
@@ -153,6 +220,7 @@ public class VolunteerMatch {
 					break;
 				}
 				case "9": {// *** Quit *** //
+					closeLog(manager, System.out);
 					isContinued = false;
 					break;
 				}
@@ -163,6 +231,93 @@ public class VolunteerMatch {
 		}
 	}
 
+	/**
+	 * @return the horizon, or -1 if the text is not a number from 1 to AvailabilityCalendar.MAX_HORIZON
+	 */
+	private static int parseHorizon(String text){
+		try {
+			int horizon = Integer.parseInt(text.trim());
+			return (horizon >= 1 && horizon <= AvailabilityCalendar.MAX_HORIZON) ? horizon : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @return the prompt for available dates, showing the date range of the horizon
+	 */
+	private static String availableDatePrompt(int horizon){
+		return Resource.STR_INPUT_VOLUNTEER_AVAILABLE_DATE.replace(
+				"~" + AvailabilityCalendar.DEFAULT_HORIZON, "~" + horizon);
+	}
+
+	/**
+	 * Starts the write-ahead log of the program: resumes the log in the
+	 * directory if it holds one, otherwise starts a new log of the manager.
+	 * 
+	 * @param manager the manager to log if the directory holds no log yet
+	 * @param directory the log directory
+	 * @return the log, or null if it cannot be started (the error is printed)
+	 */
+	private static WriteAheadLog startLog(EventManager manager, String directory){
+		try {
+			WriteAheadLog log = WriteAheadLog.resume(directory);
+			return (log != null) ? log : WriteAheadLog.open(manager, directory);
+		} catch (IOException | IllegalArgumentException e) {	//Unreadable, or not a log of this program.
+			System.out.format(STR_ERROR_LOG_PRINT_FORMAT, directory, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Closes the write-ahead log of the manager, if it has one, once every
+	 * change is on disk.
+	 * 
+	 * @return false if writing the log failed (the error is printed)
+	 */
+	private static boolean closeLog(EventManager manager, PrintStream out){
+		WriteAheadLog log = manager.getLog();
+		if (log == null) {
+			return true;
+		}
+		try {
+			log.close();
+			return true;
+		} catch (IOException e) {
+			out.format(STR_ERROR_LOG_WRITE_PRINT_FORMAT, e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Runs the commands of a script with BatchRunner instead of the menu.
+	 * 
+	 * @param manager the manager the script starts with
+	 * @param scriptPath the script file, or "-" for standard input
+	 * @return the exit status: 0 if every command succeeded, 1 if any failed or the log
+	 * could not be written, 2 if the script cannot be read
+	 */
+	private static int runBatch(EventManager manager, String scriptPath){
+		PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), WRITE_BUFFER_SIZE), false);
+		BatchRunner runner = new BatchRunner(manager, out);
+		
+		try {
+			InputStream in = scriptPath.equals("-") ? System.in : new FileInputStream(scriptPath);
+			try (BufferedReader script = new BufferedReader(new InputStreamReader(in), WRITE_BUFFER_SIZE)) {
+				int failed = runner.run(script);
+				boolean logged = closeLog(runner.getManager(), out);	//load-snapshot may have replaced the manager.
+				out.flush();
+				return (failed == 0 && logged) ? 0 : 1;
+			}
+		} catch (FileNotFoundException e) {
+			out.format(Resource.STR_ERROR_READ_FILE_PRINT_FORMAT, scriptPath);
+			out.flush();
+			return 2;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 	/**
 	 * Read data input file and parse to add volunteers and events into event manager.
 	 * 
@@ -185,6 +340,8 @@ public class VolunteerMatch {
 	 * NOTE1 : ignore lines that have invalid format and continue to parse
 	 * NOTE2 : there is no certain order for v/e lines but matched volunteers for an event must be added before adding the event.
 	 * 
+	 * The file is tokenized by VEFileParser in one pass over a byte buffer.
+	 * 
 	 * @see P5 description on Canvas
 	 * 
 	 * @param manager an EventManager instance
@@ -192,96 +349,80 @@ public class VolunteerMatch {
 	 * @throws FileNotFoundException if a file is not in filePath, it throws FileNotFoundException
 	 */
 	public static void readFromFile(EventManager manager, String filePath) throws FileNotFoundException{
-		File inputFile = null; 	 	//File object made from the filename.
-		Scanner fileScn = null;		//Scanner to read from the file.
-
-		inputFile = new File(filePath);
-		fileScn = new Scanner(inputFile);
+		readFromFile(manager, filePath, false);
+	}
+	
+	/**
+	 * Read data input file like readFromFile(EventManager, String), optionally
+	 * by memory-mapping it. The mapped mode reads the lines in place from the
+	 * page cache instead of copying them through a read buffer, which suits
+	 * very large files; it maps the file in windows, so files over 2 GB work.
+	 * 
+	 * @param manager an EventManager instance
+	 * @param filePath a VE file path to read
+	 * @param memoryMapped true to memory-map the file, false to stream it
+	 * @throws FileNotFoundException if a file is not in filePath, it throws FileNotFoundException
+	 */
+	public static void readFromFile(EventManager manager, String filePath, boolean memoryMapped) throws FileNotFoundException{
+		ManagerMetrics metrics = manager.getMetrics();
+		long start = (metrics == null) ? 0 : System.nanoTime();
+		boolean loaded = false;
+		VEFileParser parser = new VEFileParser(manager);
 		
-		while (fileScn.hasNextLine()) {					 //Reading in each line of data from file.
-			String fileLine = fileScn.nextLine().trim(); //The string of data per line from file.
-			String[] volunteerEventinfo = fileLine.split(";"); 		  //Split line based on delimiters (";").
-			ArrayList<String> fileLineData = new ArrayList<String>(); //ArrayList to hold strings after splitting.
-			
-			//**If a volunteer from the file, then add it to list of volunteers.**
-			if (volunteerEventinfo[0].trim().equalsIgnoreCase("v")) {
-				/*
-				 * Check how many items in list to see if proper formatting of delimiters used. Do not want 
-				 * "v volunteer/event name date1, date2" instead of "v; volunteer/event name; date1,date2" 
-				 * from file line because strings of separate information will get mixed up. 
-				 */
-				for (String strData : volunteerEventinfo) {
-					fileLineData.add(strData);	
-				}
-				//**We can have volunteers with a list of dates, and also with no dates available.** 
-				if (fileLineData.size() > 3 || fileLineData.size() < 2) {	
-					continue; //Volunteer lines must have exactly 2 or 3 items after splitting for valid line format.
-				}
-				
-				//**After passing format checks, construct names and dates from file.**
-				String name = fileLineData.get(1).trim();	//The name of the volunteer.
-				
-				if (fileLineData.size() == 2) {
-					//If we have no dates available from the file.
-					String[] vDates = {};					//An empty array with no items (length = 0).
-					
-					//Add volunteer to list of volunteers if no duplicate/invalid dates, else read next file line.
-					if (manager.addVolunteer(name, vDates) == false) {
-						continue; 
-					}
-				}
-				else {	//If a volunteer does have some dates available.
-					String[] vDates = fileLineData.get(2).split(",");     //The comma-separated volunteer dates.
-				
-					//**Trimming each number/date of volunteer to avoid whitespace throwing NumberFormatExceptions.** 
-					for (int i = 0; i < vDates.length; i++) {
-						vDates[i] = vDates[i].trim();
-					}					
-					//Add volunteer to list of volunteers if no duplicate/invalid dates, else read next file line.
-					if (manager.addVolunteer(name, vDates) == false) {
-						continue; 
-					}
+		try {
+			if (memoryMapped) {
+				RandomAccessFile file = new RandomAccessFile(filePath, "r");
+				try (FileChannel channel = file.getChannel()) {
+					parser.parse(channel);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
 				}
 			}
-			
-			//**If a volunteer read from the file, then add it to the list of volunteers.**
-			else if (volunteerEventinfo[0].trim().equalsIgnoreCase("e")) { 
-				String eventName = volunteerEventinfo[1].trim(); //Title of the event.
-				
-				for (String strData : volunteerEventinfo) {
-					fileLineData.add(strData);	
-				}
-				if (fileLineData.size() < 4 || fileLineData.size() > 5) {	
-					continue; //Event lines must have 4 or 5 items after splitting (some events don't have volunteers).
-				}
-									
-				//**Parsing the event logistics from the file line.**
-				String eventDate = fileLineData.get(2).trim(); 	       //The date of the event.
-				String maxNumVolunteers = fileLineData.get(3).trim();  //Max amount of volunteers for this event.
-						
-				//**Add event to list of events if no duplicate event and logistics are valid, else continue.**
-				if (manager.addEvent(eventName, eventDate, maxNumVolunteers) == false) {
-					continue;		
-				}
-				//**If the event file line has 5th index for matched volunteers, add them to a list.**
-				if (fileLineData.size() > 4) { 
-					String volunteerNames = fileLineData.get(4).trim();    //The list of matched volunteers.
-					String[] volunteerList = volunteerNames.split(","); //Get list of volunteer names from the event.
-					
-					//**Attempting to create a match between this event and all of its potential volunteers.**
-					for (String vName : volunteerList) {
-						if (manager.createMatch(eventName, vName.trim()) == false) {
-							continue;	//If a volunteer wasn't able to be matched, then continue to next line.
-						}
-					}
+			else {
+				InputStream in = new FileInputStream(filePath);	//Raw bytes of the file, parsed in a single pass.
+				try (InputStream stream = in) {
+					parser.parse(stream);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
 				}
 			}
-			//**If neither a volunteer or an event, then just skip the invalid line.**
-			else {
-				continue;
+			loaded = true;
+		} finally {
+			if (metrics != null) {
+				metrics.record(ManagerMetrics.Operation.LOAD, loaded, start);
+			}
+		}
+	}
+
+	/**
+	 * Read data input file using all cores of the machine.
+	 * Volunteer and event lines are parsed and validated in parallel, then all
+	 * volunteers are added in file order, followed by all events.
+	 * 
+	 * @see ParallelImporter for how this differs from readFromFile
+	 * 
+	 * @param manager an EventManager instance
+	 * @param filePath a VE file path to read
+	 * @throws FileNotFoundException if a file is not in filePath, it throws FileNotFoundException
+	 */
+	public static void readFromFileParallel(EventManager manager, String filePath) throws FileNotFoundException{
+		ManagerMetrics metrics = manager.getMetrics();
+		long start = (metrics == null) ? 0 : System.nanoTime();
+		boolean loaded = false;
+		
+		try {
+			RandomAccessFile file = new RandomAccessFile(filePath, "r");
+			try (FileChannel channel = file.getChannel()) {
+				ParallelImporter.importFile(manager, channel, ForkJoinPool.commonPool());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			loaded = true;
+		} finally {
+			if (metrics != null) {
+				metrics.record(ManagerMetrics.Operation.LOAD, loaded, start);
 			}
 		}
-			fileScn.close();
 	}
 
 	/**
@@ -306,16 +447,75 @@ public class VolunteerMatch {
 	 * @throws FileNotFoundException if the program cannot make a file to the filePath, it throws FileNotFoundException
 	 */
 	public static void writeToFile(EventManager manager, String filePath) throws FileNotFoundException{
+		ManagerMetrics metrics = manager.getMetrics();
+		long start = (metrics == null) ? 0 : System.nanoTime();
+		boolean saved = false;
 		
-		PrintWriter writer = null;     //Enables the writing of data from inputFile to an output file.
-		
-		writer = new PrintWriter(filePath);	//Creating the output file with the .txt extension.
-		
-		//**Writing the volunteers to the file first, then the events.**
-		writer.printf(manager.toStringAllVolunteers());
-		writer.printf(manager.toStringAllEvents());
+		try {
+			OutputStream out = new FileOutputStream(filePath); //Creating the output file.
+			
+			//Records are written straight through a buffer, never collected into one large string.
+			try (Writer writer = new BufferedWriter(new OutputStreamWriter(out), WRITE_BUFFER_SIZE)) {
+				//**Writing the volunteers to the file first, then the events.**
+				manager.writeAllVolunteers(writer);
+				manager.writeAllEvents(writer);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			saved = true;
+		} finally {
+			if (metrics != null) {
+				metrics.record(ManagerMetrics.Operation.SAVE, saved, start);
+			}
+		}
+	}
+
+	/**
+	 * Save the full state of the event manager as a binary snapshot.
+	 * Unlike writeToFile the snapshot can be loaded back without re-validating
+	 * dates or re-creating matches one at a time.
+	 * 
+	 * @see SnapshotFile for the format
+	 * 
+	 * @param manager an EventManager instance to save
+	 * @param filePath the name of the snapshot file to write
+	 * @throws FileNotFoundException if the program cannot make a file to the filePath
+	 */
+	public static void saveSnapshot(EventManager manager, String filePath) throws FileNotFoundException{
+		ManagerMetrics metrics = manager.getMetrics();
+		long start = (metrics == null) ? 0 : System.nanoTime();
+		boolean saved = false;
 		
-		writer.close();
+		try {
+			OutputStream out = new FileOutputStream(filePath);
+			
+			try (OutputStream buffered = new BufferedOutputStream(out, WRITE_BUFFER_SIZE)) {
+				SnapshotFile.write(manager, buffered);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			saved = true;
+		} finally {
+			if (metrics != null) {
+				metrics.record(ManagerMetrics.Operation.SAVE, saved, start);
+			}
+		}
+	}
+	
+	/**
+	 * Load an event manager from a binary snapshot written by saveSnapshot.
+	 * 
+	 * @param filePath the snapshot file to read
+	 * @return a new EventManager with the saved volunteers, events and matches
+	 * @throws FileNotFoundException if a file is not in filePath
+	 */
+	public static EventManager loadSnapshot(String filePath) throws FileNotFoundException{
+		FileInputStream in = new FileInputStream(filePath);
 		
+		try (InputStream buffered = new BufferedInputStream(in, WRITE_BUFFER_SIZE)) {
+			return SnapshotFile.read(buffered, in.getChannel().size());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,782 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes made to an EventManager, so that edits
+ * made since the last save survive a crash.
+ *
+ * A log directory holds one snapshot and the log segments written after
+ * it:
+ * <ul>
+ * <li>{@code snapshot-N} is a SnapshotFile holding the state before segment N,</li>
+ * <li>{@code log-N}, {@code log-N+1}, ... hold the changes made after it, in order.</li>
+ * </ul>
+ * open writes the manager's current state (e.g. just read from a VE file
+ * or snapshot) as the first snapshot, then every change is appended as a
+ * compact record: added and removed volunteers and events, created and
+ * removed matches (including those made by autoMatch and auto-rematch)
+ * and availability changes. recover rebuilds the manager by replaying the
+ * segments on top of the snapshot. open refuses a directory that already
+ * holds a log, so it never deletes changes nobody recovered; resume
+ * recovers such a directory and goes on logging in it.
+ *
+ * Records are group-committed: they are buffered in memory and a
+ * background thread writes and fsyncs everything appended during each
+ * commit interval at once, so changes never wait for the disk. Call sync
+ * to wait until every change made so far is durable. A crash loses at
+ * most the changes of the last commit interval; a record torn by the
+ * crash is detected by its checksum and dropped. Once writing the log
+ * has failed, every further change of the manager throws an
+ * UncheckedIOException after it is made, since it can no longer be kept.
+ *
+ * When a segment grows past the segment size, a new one is started and
+ * the log compacts itself in the background: a second thread replays the
+ * full segments onto the snapshot, writes the result as a new snapshot
+ * and deletes the files it replaces. Compaction only reads the log
+ * directory, never the live manager.
+ *
+ * <pre>
+ * segment: int MAGIC, VERSION, then records
+ * record:  int payload length, int CRC32 of payload, payload
+ * payload: byte type, then the fields of that type:
+ *   ADD_VOLUNTEER    name, varint date count, varint dates
+ *   ADD_EVENT        name, varint date, varint limit
+ *   REMOVE_VOLUNTEER name
+ *   REMOVE_EVENT     name
+ *   MATCH, UNMATCH   event name, volunteer name
+ *   AVAILABLE, UNAVAILABLE  volunteer name, varint date
+ * </pre>
+ * Names are a varint byte length followed by UTF-8 bytes.
+ */
+public class WriteAheadLog implements Closeable {
+
+	/** "VEWL" - first four bytes of every segment */
+	static final int MAGIC = 0x5645574C;
+
+	/** format version written by this class */
+	static final int VERSION = 1;
+
+	/** segment size used when none is given */
+	public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+	/** commit interval used when none is given */
+	public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 10;
+
+	/** appends wait for the committer once this many bytes are pending */
+	private static final int MAX_PENDING = 16 << 20;
+
+	/** record types */
+	private static final byte ADD_VOLUNTEER = 1, ADD_EVENT = 2, REMOVE_VOLUNTEER = 3, REMOVE_EVENT = 4,
+			MATCH = 5, UNMATCH = 6, AVAILABLE = 7, UNAVAILABLE = 8;
+
+	private static final String SNAPSHOT_PREFIX = "snapshot-", SEGMENT_PREFIX = "log-";
+
+	/** size of the record header: payload length and checksum */
+	private static final int HEADER_SIZE = 8;
+
+	private final EventManager manager;
+	private final Path directory;
+	private final long segmentSize;
+	private final long commitIntervalMillis;
+
+	/** records appended but not yet handed to the committer, and the buffer it hands back */
+	private byte[] pending = new byte[1 << 12], spare = new byte[1 << 12];
+	private int pendingSize;
+
+	/** number of records appended, and number known to be on disk */
+	private long appended, committed;
+
+	/** true once sync has asked for a commit without waiting for the interval */
+	private boolean syncRequested;
+
+	private boolean closed;
+
+	/** the first error of the committer; later records throw it */
+	private IOException failure;
+
+	/** the first error of a compaction, reported by close */
+	private IOException compactionFailure;
+
+	/** number of the segment being written; only the committer changes it */
+	private volatile int activeSegment;
+
+	/** the segment being written and its size so far; only used by the committer */
+	private FileChannel channel;
+	private long channelSize;
+
+	private final Thread committer;
+	private final ExecutorService compactor;
+
+	/** reused while encoding records */
+	private final CRC32 crc = new CRC32();
+
+	private WriteAheadLog(EventManager manager, Path directory, int segment, long segmentSize, long commitIntervalMillis)
+			throws IOException {
+		this.manager = manager;
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.commitIntervalMillis = commitIntervalMillis;
+		this.activeSegment = segment;
+		this.channel = createSegment(directory, segment);
+		this.channelSize = channel.size();
+		this.committer = new Thread(this::commitLoop, "write-ahead log commit");
+		this.committer.setDaemon(true);
+		this.compactor = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "write-ahead log compaction");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Starts logging the changes of a manager, with the default segment
+	 * size and commit interval.
+	 *
+	 * @see #open(EventManager, String, long, long)
+	 */
+	public static WriteAheadLog open(EventManager manager, String directory) throws IOException {
+		return open(manager, directory, DEFAULT_SEGMENT_SIZE, DEFAULT_COMMIT_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * Starts logging the changes of a manager in a directory that holds no
+	 * log yet. Its current state is saved as the first snapshot of the
+	 * directory. The manager must not change while open runs.
+	 *
+	 * @param manager the manager to log; it may have only one log at a time
+	 * @param directory the log directory, created if missing
+	 * @param segmentSize bytes after which a new segment is started and the old ones compacted
+	 * @param commitIntervalMillis longest time a change stays in memory before it is written and fsynced
+	 * @return the log, already attached to the manager
+	 * @throws IOException if the directory already holds a snapshot or segments, or cannot be written
+	 */
+	public static WriteAheadLog open(EventManager manager, String directory, long segmentSize, long commitIntervalMillis)
+			throws IOException {
+		if (segmentSize < 1 || commitIntervalMillis < 0) throw new IllegalArgumentException();
+		if (manager.getLog() != null) throw new IllegalStateException("manager already has a log");
+		Path dir = Paths.get(directory);
+		Files.createDirectories(dir);
+		for (Path file : list(dir)) {
+			if (isFile(file, SNAPSHOT_PREFIX) || isFile(file, SEGMENT_PREFIX)) {
+				throw new IOException("log directory " + dir + " already holds a log; resume or recover it");
+			}
+		}
+		return start(manager, dir, segmentSize, commitIntervalMillis);
+	}
+
+	/**
+	 * Recovers a log directory and goes on logging in it, with the default
+	 * segment size and commit interval.
+	 *
+	 * @see #resume(String, long, long)
+	 */
+	public static WriteAheadLog resume(String directory) throws IOException {
+		return resume(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_COMMIT_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * Recovers a log directory (see recover) and logs the changes of the
+	 * recovered manager there. Its state is saved as the new snapshot, and
+	 * the snapshot and segments it was recovered from are deleted.
+	 *
+	 * @param directory the log directory
+	 * @param segmentSize bytes after which a new segment is started and the old ones compacted
+	 * @param commitIntervalMillis longest time a change stays in memory before it is written and fsynced
+	 * @return the log, attached to the recovered manager (see getManager), or null if the
+	 * directory holds no snapshot
+	 * @throws IOException if reading fails, the log does not apply to the snapshot or the directory cannot be written
+	 */
+	public static WriteAheadLog resume(String directory, long segmentSize, long commitIntervalMillis) throws IOException {
+		if (segmentSize < 1 || commitIntervalMillis < 0) throw new IllegalArgumentException();
+		EventManager manager = recover(directory);
+		if (manager == null) return null;
+		return start(manager, Paths.get(directory), segmentSize, commitIntervalMillis);
+	}
+
+	/**
+	 * Closes this log and starts logging another manager in the same
+	 * directory, e.g. one that replaced the logged manager. Its state is
+	 * saved as the new snapshot, and the files of this log are deleted.
+	 *
+	 * @param manager the manager to log from now on
+	 * @return the new log, already attached to the manager
+	 * @throws IOException if closing this log or writing the new snapshot failed
+	 */
+	public WriteAheadLog reopen(EventManager manager) throws IOException {
+		if (manager.getLog() != null) throw new IllegalStateException("manager already has a log");
+		close();
+		return start(manager, directory, segmentSize, commitIntervalMillis);
+	}
+
+	/**
+	 * Saves the manager as the next snapshot of the directory, deletes
+	 * everything before it and starts logging.
+	 */
+	private static WriteAheadLog start(EventManager manager, Path dir, long segmentSize, long commitIntervalMillis)
+			throws IOException {
+		int segment = 0;
+		for (Path file : list(dir)) {
+			segment = Math.max(segment, fileNumber(file) + 1);
+		}
+		writeSnapshot(manager, dir, segment);
+		WriteAheadLog log = new WriteAheadLog(manager, dir, segment, segmentSize, commitIntervalMillis);
+		log.deleteBefore(segment, segment);
+		manager.setLog(log);
+		log.committer.start();
+		return log;
+	}
+
+	/**
+	 * Rebuilds a manager from a log directory: reads its snapshot and
+	 * replays every segment after it. A record torn by a crash at the end
+	 * of the last segment is ignored.
+	 *
+	 * @param directory the log directory
+	 * @return the recovered manager, or null if the directory holds no snapshot
+	 * @throws IOException if reading fails or the log does not apply to the snapshot
+	 */
+	public static EventManager recover(String directory) throws IOException {
+		Path dir = Paths.get(directory);
+		if (!Files.isDirectory(dir)) return null;
+		int snapshot = -1;
+		for (Path file : list(dir)) {
+			if (isFile(file, SNAPSHOT_PREFIX)) snapshot = Math.max(snapshot, fileNumber(file));
+		}
+		if (snapshot == -1) return null;
+		List<Integer> segments = new ArrayList<Integer>();
+		for (Path file : list(dir)) {
+			int number = fileNumber(file);
+			if (isFile(file, SEGMENT_PREFIX) && number >= snapshot) segments.add(number);
+		}
+		Collections.sort(segments);
+		EventManager manager = readSnapshot(dir, snapshot);
+		for (int i = 0; i < segments.size(); i++) {
+			boolean last = (i == segments.size() - 1);
+			if (!replay(manager, dir.resolve(SEGMENT_PREFIX + segments.get(i))) && !last) {
+				throw new IOException("torn record in segment " + segments.get(i) + ", which is not the last one");
+			}
+		}
+		return manager;
+	}
+
+	/**
+	 * Waits until every change logged so far is on disk.
+	 *
+	 * @throws IOException if writing the log failed
+	 */
+	public synchronized void sync() throws IOException {
+		long target = appended;
+		syncRequested = true;
+		notifyAll();
+		boolean interrupted = false;
+		while (committed < target && failure == null) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+		if (failure != null) throw failure;
+	}
+
+	/**
+	 * Detaches the log from its manager, writes out every pending change
+	 * and waits for a running compaction to finish.
+	 *
+	 * @throws IOException if writing the log or a compaction failed
+	 */
+	@Override
+	public void close() throws IOException {
+		manager.setLog(null);
+		synchronized (this) {
+			if (closed) return;
+			closed = true;
+			notifyAll();
+		}
+		boolean interrupted = false;
+		try {
+			committer.join();
+			compactor.shutdown();
+			compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			interrupted = true;
+		}
+		channel.close();
+		if (interrupted) Thread.currentThread().interrupt();
+		synchronized (this) {
+			if (failure != null) throw failure;
+			if (compactionFailure != null) throw compactionFailure;
+		}
+	}
+
+	/**
+	 * @return the manager whose changes are logged
+	 */
+	public EventManager getManager() {
+		return manager;
+	}
+
+	/**
+	 * @return the number of the segment being written
+	 */
+	public int getActiveSegment() {
+		return activeSegment;
+	}
+
+	// *** Records, appended by EventManager after each change *** //
+
+	void addVolunteer(Volunteer vol) {
+		synchronized (this) {
+			int start = beginRecord(ADD_VOLUNTEER);
+			putName(vol.getName());
+			putVarInt(vol.getAvailableDates().size());
+			for (int date = vol.nextAvailableDate(1); date != -1; date = vol.nextAvailableDate(date + 1)) {
+				putVarInt(date);
+			}
+			endRecord(start);
+		}
+	}
+
+	void addEvent(Event event) {
+		synchronized (this) {
+			int start = beginRecord(ADD_EVENT);
+			putName(event.getName());
+			putVarInt(event.getDate());
+			putVarInt(event.getLimit());
+			endRecord(start);
+		}
+	}
+
+	void removeVolunteer(Volunteer vol) {
+		synchronized (this) {
+			int start = beginRecord(REMOVE_VOLUNTEER);
+			putName(vol.getName());
+			endRecord(start);
+		}
+	}
+
+	void removeEvent(Event event) {
+		synchronized (this) {
+			int start = beginRecord(REMOVE_EVENT);
+			putName(event.getName());
+			endRecord(start);
+		}
+	}
+
+	void match(Event event, Volunteer vol, boolean matched) {
+		synchronized (this) {
+			int start = beginRecord(matched ? MATCH : UNMATCH);
+			putName(event.getName());
+			putName(vol.getName());
+			endRecord(start);
+		}
+	}
+
+	void availability(Volunteer vol, int date, boolean available) {
+		synchronized (this) {
+			int start = beginRecord(available ? AVAILABLE : UNAVAILABLE);
+			putName(vol.getName());
+			putVarInt(date);
+			endRecord(start);
+		}
+	}
+
+	/**
+	 * Starts a record in the pending buffer. Must hold the lock.
+	 *
+	 * @return where the record starts
+	 */
+	private int beginRecord(byte type) {
+		boolean interrupted = false;
+		while (pendingSize >= MAX_PENDING && failure == null && !closed) {
+			syncRequested = true;	// let the committer catch up
+			notifyAll();
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+		int start = pendingSize;
+		ensureRoom(HEADER_SIZE + 1);
+		pendingSize += HEADER_SIZE;
+		pending[pendingSize++] = type;
+		return start;
+	}
+
+	/**
+	 * Fills in the header of the record begun at start and hands it to the committer.
+	 *
+	 * @throws UncheckedIOException if writing the log has failed; the record is dropped
+	 */
+	private void endRecord(int start) {
+		if (failure != null) {
+			pendingSize = start;	// nothing will write it
+			throw new UncheckedIOException("write-ahead log failed, the change is not logged", failure);
+		}
+		if (closed) {
+			pendingSize = start;	// detached while the change was made
+			return;
+		}
+		int payload = pendingSize - start - HEADER_SIZE;
+		crc.reset();
+		crc.update(pending, start + HEADER_SIZE, payload);
+		ByteBuffer.wrap(pending, start, HEADER_SIZE).putInt(payload).putInt((int) crc.getValue());
+		appended++;
+		if (start == 0) notifyAll();	// the committer waits for the first record
+	}
+
+	private void putName(String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		putVarInt(bytes.length);
+		ensureRoom(bytes.length);
+		System.arraycopy(bytes, 0, pending, pendingSize, bytes.length);
+		pendingSize += bytes.length;
+	}
+
+	private void putVarInt(int value) {
+		ensureRoom(5);
+		while ((value & ~0x7F) != 0) {
+			pending[pendingSize++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		pending[pendingSize++] = (byte) value;
+	}
+
+	private void ensureRoom(int bytes) {
+		if (pendingSize + bytes > pending.length) {
+			pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingSize + bytes));
+		}
+	}
+
+	// *** Group commit and compaction *** //
+
+	/**
+	 * Body of the committer thread: waits for records, lets more gather
+	 * for one commit interval, then writes and fsyncs them together.
+	 */
+	private void commitLoop() {
+		for (;;) {
+			byte[] batch;
+			int size;
+			long upTo;
+			synchronized (this) {
+				try {
+					while (pendingSize == 0 && !closed) {
+						wait();
+					}
+					if (pendingSize == 0) return;	// closed with nothing left
+					if (!syncRequested && !closed && commitIntervalMillis > 0) {
+						wait(commitIntervalMillis);		// group commit: gather more records
+					}
+				} catch (InterruptedException e) {
+					// commit what there is
+				}
+				batch = pending;
+				size = pendingSize;
+				upTo = appended;
+				pending = spare;
+				pendingSize = 0;
+				syncRequested = false;
+				notifyAll();	// appends waiting for room can go on
+			}
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap(batch, 0, size);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(false);
+				channelSize += size;
+				if (channelSize >= segmentSize) {
+					startNextSegment();
+				}
+			} catch (IOException e) {
+				synchronized (this) {
+					failure = e;
+					pendingSize = 0;
+					notifyAll();
+				}
+				return;
+			}
+			synchronized (this) {
+				spare = batch;
+				committed = upTo;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Closes the full segment, starts the next one and compacts the full ones.
+	 */
+	private void startNextSegment() throws IOException {
+		channel.close();
+		channel = createSegment(directory, activeSegment + 1);
+		channelSize = channel.size();
+		activeSegment++;
+		compactor.execute(this::compact);
+	}
+
+	/**
+	 * Replays the full segments onto the snapshot, saves the result as the
+	 * new snapshot and deletes what it replaces.
+	 */
+	private void compact() {
+		try {
+			int next = activeSegment;	// segments before it are full and fsynced
+			int snapshot = -1;
+			for (Path file : list(directory)) {
+				if (isFile(file, SNAPSHOT_PREFIX)) snapshot = Math.max(snapshot, fileNumber(file));
+			}
+			if (snapshot == -1 || snapshot >= next) return;
+			EventManager state = readSnapshot(directory, snapshot);
+			for (int segment = snapshot; segment < next; segment++) {
+				if (!replay(state, directory.resolve(SEGMENT_PREFIX + segment))) {
+					throw new IOException("torn record in full segment " + segment);
+				}
+			}
+			writeSnapshot(state, directory, next);
+			deleteBefore(next, next);
+		} catch (IOException e) {
+			synchronized (this) {
+				if (compactionFailure == null) compactionFailure = e;
+			}
+		}
+	}
+
+	/**
+	 * Deletes snapshots numbered below snapshot, segments below segment and leftover temporary files.
+	 */
+	private void deleteBefore(int snapshot, int segment) throws IOException {
+		for (Path file : list(directory)) {
+			String name = file.getFileName().toString();
+			int number = fileNumber(file);
+			if (name.endsWith(".tmp")
+					|| (name.startsWith(SNAPSHOT_PREFIX) && number < snapshot)
+					|| (name.startsWith(SEGMENT_PREFIX) && number < segment)) {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	// *** Files *** //
+
+	private static FileChannel createSegment(Path dir, int segment) throws IOException {
+		FileChannel channel = FileChannel.open(dir.resolve(SEGMENT_PREFIX + segment),
+				StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION);
+		header.flip();
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+		channel.force(false);
+		syncDirectory(dir);
+		return channel;
+	}
+
+	/**
+	 * Writes snapshot-number through a temporary file, so a crash never
+	 * leaves a partial snapshot behind.
+	 */
+	private static void writeSnapshot(EventManager manager, Path dir, int number) throws IOException {
+		Path tmp = dir.resolve(SNAPSHOT_PREFIX + number + ".tmp");
+		try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+			OutputStream out = new BufferedOutputStream(file, 1 << 16);
+			SnapshotFile.write(manager, out);
+			out.flush();
+			file.getFD().sync();
+		}
+		Files.move(tmp, dir.resolve(SNAPSHOT_PREFIX + number), StandardCopyOption.ATOMIC_MOVE);
+		syncDirectory(dir);
+	}
+
+	private static EventManager readSnapshot(Path dir, int number) throws IOException {
+		Path file = dir.resolve(SNAPSHOT_PREFIX + number);
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+			return SnapshotFile.read(in, Files.size(file));
+		}
+	}
+
+	/**
+	 * Applies the records of a segment to the manager.
+	 *
+	 * @return false if the segment ends with a torn record, true if it was read to its end
+	 * @throws IOException if reading fails or a record does not apply
+	 */
+	private static boolean replay(EventManager manager, Path segment) throws IOException {
+		long remaining = Files.size(segment) - 8;	// bytes after the segment header
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment), 1 << 16))) {
+			try {
+				if (in.readInt() != MAGIC) throw new IOException("not a log segment: " + segment);
+			} catch (EOFException e) {
+				return false;	// crashed while creating it
+			}
+			int version = in.readInt();
+			if (version != VERSION) throw new IOException("unsupported log version " + version);
+			CRC32 check = new CRC32();
+			byte[] payload = new byte[256];
+			for (;;) {
+				int length;
+				int checksum;
+				try {
+					length = in.readInt();
+				} catch (EOFException e) {
+					return true;
+				}
+				try {
+					checksum = in.readInt();
+					remaining -= HEADER_SIZE;
+					if (length < 1 || length > remaining) return false;	// a torn or garbled length
+					remaining -= length;
+					if (length > payload.length) payload = new byte[Math.max(length, payload.length * 2)];
+					in.readFully(payload, 0, length);
+				} catch (EOFException e) {
+					return false;
+				}
+				check.reset();
+				check.update(payload, 0, length);
+				if ((int) check.getValue() != checksum) return false;
+				apply(manager, ByteBuffer.wrap(payload, 0, length));
+			}
+		}
+	}
+
+	/**
+	 * Applies one record, with the same checks as the original change.
+	 */
+	private static void apply(EventManager manager, ByteBuffer record) throws IOException {
+		byte type = record.get();
+		boolean applied;
+		switch (type) {
+			case ADD_VOLUNTEER: {
+				String name = getName(record);
+				int[] dates = new int[getVarInt(record)];
+				for (int i = 0; i < dates.length; i++) {
+					dates[i] = getVarInt(record);
+				}
+				applied = manager.areValidDates(dates, dates.length) && manager.addVolunteer(name, dates, dates.length);
+				break;
+			}
+			case ADD_EVENT:
+				applied = manager.addEvent(getName(record), getVarInt(record), getVarInt(record));
+				break;
+			case REMOVE_VOLUNTEER:
+				applied = manager.removeVolunteer(getName(record));
+				break;
+			case REMOVE_EVENT:
+				applied = manager.removeEvent(getName(record));
+				break;
+			case MATCH:
+				applied = manager.createMatchByName(getName(record), getName(record));
+				break;
+			case UNMATCH:
+				applied = manager.removeMatchByName(getName(record), getName(record));
+				break;
+			case AVAILABLE:
+				applied = manager.setVolunteerAvailable(getName(record), getVarInt(record));
+				break;
+			case UNAVAILABLE:
+				applied = manager.setVolunteerUnavailable(getName(record), getVarInt(record));
+				break;
+			default:
+				throw new IOException("unknown log record type " + type);
+		}
+		if (!applied) throw new IOException("log record of type " + type + " does not apply to the snapshot");
+	}
+
+	private static String getName(ByteBuffer record) throws IOException {
+		int length = getVarInt(record);
+		if (length > record.remaining()) throw new IOException("name past the end of a log record");
+		String name = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+		record.position(record.position() + length);
+		return name;
+	}
+
+	private static int getVarInt(ByteBuffer record) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			if (!record.hasRemaining()) throw new IOException("number past the end of a log record");
+			byte b = record.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) return value;
+		}
+		throw new IOException("malformed number in a log record");
+	}
+
+	/**
+	 * @return the snapshots, segments and temporary files of the directory
+	 */
+	private static List<Path> list(Path dir) throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for (Path file : stream) {
+				if (fileNumber(file) != -1) files.add(file);
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * @return N of snapshot-N, log-N or snapshot-N.tmp, or -1 for any other file
+	 */
+	private static int fileNumber(Path file) {
+		String name = file.getFileName().toString();
+		if (name.endsWith(".tmp")) name = name.substring(0, name.length() - 4);
+		String digits;
+		if (name.startsWith(SNAPSHOT_PREFIX)) digits = name.substring(SNAPSHOT_PREFIX.length());
+		else if (name.startsWith(SEGMENT_PREFIX)) digits = name.substring(SEGMENT_PREFIX.length());
+		else return -1;
+		if (digits.isEmpty() || digits.length() > 9) return -1;
+		for (int i = 0; i < digits.length(); i++) {
+			if (!Character.isDigit(digits.charAt(i))) return -1;
+		}
+		return Integer.parseInt(digits);
+	}
+
+	/**
+	 * @return true if the file is a finished snapshot or segment, as given by prefix
+	 */
+	private static boolean isFile(Path file, String prefix) {
+		String name = file.getFileName().toString();
+		return name.startsWith(prefix) && !name.endsWith(".tmp");
+	}
+
+	/**
+	 * Makes file creations and renames in the directory durable. Not every
+	 * platform can open a directory; there the call does nothing.
+	 */
+	private static void syncDirectory(Path dir) {
+		try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// directories cannot be opened on this platform
+		}
+	}
+}
@@ -0,0 +1,240 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Checks that a write-ahead log gives back the manager it logged, and
+ * what recovery does with damaged logs.
+ *
+ * Each check logs a series of changes into a fresh directory, damages the
+ * log in one way, then compares the recovered manager with the expected
+ * state, snapshot byte for snapshot byte:
+ * <ul>
+ * <li>a clean log recovers to the final state;</li>
+ * <li>a torn tail (the last record cut short, as by a crash while it was
+ *     written) recovers to the state before that record;</li>
+ * <li>a CRC mismatch in the last record of the last segment is also taken
+ *     for a torn tail; in an earlier segment it makes recovery fail;</li>
+ * <li>a log that was compacted (small segments, so several full ones were
+ *     folded into newer snapshots) recovers to the final state;</li>
+ * <li>open refuses a directory that already holds a log, and resume goes
+ *     on logging where the recovered log ended.</li>
+ * </ul>
+ *
+ * Run with {@code java WriteAheadLogCheck}. Prints one line per check and
+ * exits with status 1 if any failed.
+ */
+public class WriteAheadLogCheck {
+
+	/** segment size small enough for the compaction check to fill several segments */
+	private static final long SMALL_SEGMENT_SIZE = 512;
+
+	/** file names of the log, as WriteAheadLog writes them */
+	private static final String SNAPSHOT_PREFIX = "snapshot-", SEGMENT_PREFIX = "log-";
+
+	private static int failures;
+
+	public static void main(String[] args) throws IOException {
+		File root = Files.createTempDirectory("wal-check").toFile();
+		try {
+			checkClean(new File(root, "clean"));
+			checkTornTail(new File(root, "torn"));
+			checkChecksum(new File(root, "crc-last"), new File(root, "crc-full"));
+			checkCompaction(new File(root, "compaction"));
+			checkReopen(new File(root, "reopen"));
+		} finally {
+			delete(root);
+		}
+		System.out.println(failures == 0 ? "all checks passed" : failures + " check(s) failed");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static void checkClean(File dir) throws IOException {
+		EventManager manager = new EventManager();
+		WriteAheadLog log = WriteAheadLog.open(manager, dir.getPath());
+		change(manager, 0, 20);
+		log.close();
+		report("clean log recovers the final state", sameState(manager, WriteAheadLog.recover(dir.getPath())));
+	}
+
+	private static void checkTornTail(File dir) throws IOException {
+		EventManager manager = new EventManager();
+		WriteAheadLog log = WriteAheadLog.open(manager, dir.getPath());
+		change(manager, 0, 20);
+		byte[] before = snapshot(manager);
+		manager.addVolunteer("Last", new String[] {"1"});
+		log.close();
+		File segment = lastSegment(dir);
+		try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			file.setLength(file.length() - 3);	//Cuts into the payload of the last record.
+		}
+		EventManager recovered = WriteAheadLog.recover(dir.getPath());
+		report("torn tail recovers the state before the torn record",
+				recovered != null && Arrays.equals(before, snapshot(recovered)));
+		try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			file.setLength(file.length() - 6);	//Cuts into its header.
+		}
+		recovered = WriteAheadLog.recover(dir.getPath());
+		report("torn header recovers the state before the torn record",
+				recovered != null && Arrays.equals(before, snapshot(recovered)));
+	}
+
+	private static void checkChecksum(File lastDir, File fullDir) throws IOException {
+		EventManager manager = new EventManager();
+		WriteAheadLog log = WriteAheadLog.open(manager, lastDir.getPath());
+		change(manager, 0, 20);
+		byte[] before = snapshot(manager);
+		manager.addVolunteer("Last", new String[] {"1"});
+		log.close();
+		flipLastByte(lastSegment(lastDir));
+		EventManager recovered = WriteAheadLog.recover(lastDir.getPath());
+		report("CRC mismatch in the last record drops only that record",
+				recovered != null && Arrays.equals(before, snapshot(recovered)));
+
+		//A later, empty segment makes the damaged one a full segment.
+		copy(lastDir, fullDir);
+		int last = Integer.parseInt(lastSegment(fullDir).getName().substring(SEGMENT_PREFIX.length()));
+		Files.write(new File(fullDir, SEGMENT_PREFIX + (last + 1)).toPath(),
+				ByteBuffer.allocate(8).putInt(WriteAheadLog.MAGIC).putInt(WriteAheadLog.VERSION).array());
+		report("CRC mismatch in a full segment fails recovery", recoveryFails(fullDir));
+	}
+
+	private static void checkCompaction(File dir) throws IOException {
+		EventManager manager = new EventManager();
+		WriteAheadLog log = WriteAheadLog.open(manager, dir.getPath(), SMALL_SEGMENT_SIZE, 0);
+		change(manager, 0, 400);
+		int active = log.getActiveSegment();
+		log.close();	//Waits for the last compaction.
+		boolean compacted = false;
+		for (String name : dir.list()) {
+			compacted |= name.startsWith(SNAPSHOT_PREFIX) && !name.equals(SNAPSHOT_PREFIX + 0);
+		}
+		report("small segments were compacted (" + (active + 1) + " segments)", active > 0 && compacted);
+		report("compacted log recovers the final state", sameState(manager, WriteAheadLog.recover(dir.getPath())));
+	}
+
+	private static void checkReopen(File dir) throws IOException {
+		EventManager manager = new EventManager();
+		WriteAheadLog log = WriteAheadLog.open(manager, dir.getPath());
+		change(manager, 0, 20);
+		log.close();
+		try {
+			WriteAheadLog.open(new EventManager(), dir.getPath()).close();
+			report("open refuses a directory that holds a log", false);
+		} catch (IOException e) {
+			report("open refuses a directory that holds a log", sameState(manager, WriteAheadLog.recover(dir.getPath())));
+		}
+		log = WriteAheadLog.resume(dir.getPath());
+		report("resume recovers the final state", log != null && sameState(manager, log.getManager()));
+		if (log == null) {
+			return;
+		}
+		change(log.getManager(), 20, 40);
+		change(manager, 20, 40);
+		log.close();
+		report("resumed log recovers the later changes too", sameState(manager, WriteAheadLog.recover(dir.getPath())));
+	}
+
+	/**
+	 * Makes changes of every kind that is logged: volunteers and events
+	 * added and removed, matches created (also by autoMatch) and removed,
+	 * and availability changes. Steps from..to-1 of a fixed sequence.
+	 */
+	private static void change(EventManager manager, int from, int to) {
+		for (int i = from; i < to; i++) {
+			String vol = "Volunteer " + i, event = "Event " + i;
+			manager.addVolunteer(vol, new String[] {Integer.toString(1 + i % 7), Integer.toString(1 + i % 11)});
+			manager.addEvent(event, Integer.toString(1 + i % 7), Integer.toString(1 + i % 3));
+			manager.createMatch(event, vol);
+			if (i % 4 == 1) {
+				manager.removeMatch(event, vol);
+				manager.setVolunteerUnavailable(vol, 1 + i % 7);
+				manager.setVolunteerAvailable(vol, 1 + i % 13);
+			}
+			if (i % 5 == 2) {
+				manager.removeVolunteer("Volunteer " + (i - 1));
+				manager.removeEvent("Event " + (i - 2));
+			}
+			if (i % 10 == 9) {
+				manager.autoMatch();
+			}
+		}
+	}
+
+	private static boolean recoveryFails(File dir) {
+		try {
+			WriteAheadLog.recover(dir.getPath());
+			return false;
+		} catch (IOException e) {
+			return true;
+		}
+	}
+
+	private static boolean sameState(EventManager expected, EventManager actual) throws IOException {
+		return actual != null && Arrays.equals(snapshot(expected), snapshot(actual));
+	}
+
+	private static byte[] snapshot(EventManager manager) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SnapshotFile.write(manager, out);
+		return out.toByteArray();
+	}
+
+	private static void copy(File from, File to) throws IOException {
+		to.mkdirs();
+		for (File file : from.listFiles()) {
+			Files.copy(file.toPath(), new File(to, file.getName()).toPath());
+		}
+	}
+
+	/**
+	 * @return the segment with the highest number
+	 */
+	private static File lastSegment(File dir) {
+		File last = null;
+		int lastNumber = -1;
+		for (String name : dir.list()) {
+			if (name.startsWith(SEGMENT_PREFIX)) {
+				int number = Integer.parseInt(name.substring(SEGMENT_PREFIX.length()));
+				if (number > lastNumber) {
+					lastNumber = number;
+					last = new File(dir, name);
+				}
+			}
+		}
+		return last;
+	}
+
+	/**
+	 * Damages the last payload byte of a segment, so its last record fails its checksum.
+	 */
+	private static void flipLastByte(File segment) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			file.seek(file.length() - 1);
+			int b = file.read();
+			file.seek(file.length() - 1);
+			file.write(b ^ 0x01);
+		}
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private static void report(String check, boolean passed) {
+		System.out.println((passed ? "PASS " : "FAIL ") + check);
+		if (!passed) {
+			failures++;
+		}
+	}
+}